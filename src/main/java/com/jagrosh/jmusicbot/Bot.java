@@ -19,7 +19,9 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import com.jagrosh.jmusicbot.audio.AloneInVoiceHandler;
+import com.jagrosh.jmusicbot.audio.PlaybackWatchdog;
 import com.jagrosh.jmusicbot.audio.AudioHandler;
+import com.jagrosh.jmusicbot.audio.CheckpointHandler;
 import com.jagrosh.jmusicbot.audio.NowplayingHandler;
 import com.jagrosh.jmusicbot.audio.PlayerManager;
 import com.jagrosh.jmusicbot.gui.GUI;
@@ -44,6 +46,8 @@ public class Bot
     private final PlaylistLoader playlists;
     private final NowplayingHandler nowplaying;
     private final AloneInVoiceHandler aloneInVoiceHandler;
+    private final PlaybackWatchdog watchdog;
+    private final CheckpointHandler checkpoints;
     
     private boolean shuttingDown = false;
     private JDA jda;
@@ -56,12 +60,17 @@ public class Bot
         this.settings = settings;
         this.playlists = new PlaylistLoader(config);
         this.threadpool = Executors.newSingleThreadScheduledExecutor();
+        this.settings.init(threadpool);
         this.players = new PlayerManager(this);
         this.players.init();
         this.nowplaying = new NowplayingHandler(this);
         this.nowplaying.init();
         this.aloneInVoiceHandler = new AloneInVoiceHandler(this);
         this.aloneInVoiceHandler.init();
+        this.watchdog = new PlaybackWatchdog(this);
+        this.watchdog.init();
+        this.checkpoints = new CheckpointHandler(this);
+        this.checkpoints.init();
     }
     
     public BotConfig getConfig()
@@ -104,6 +113,16 @@ public class Bot
         return aloneInVoiceHandler;
     }
     
+    public PlaybackWatchdog getPlaybackWatchdog()
+    {
+        return watchdog;
+    }
+    
+    public CheckpointHandler getCheckpointHandler()
+    {
+        return checkpoints;
+    }
+    
     public JDA getJDA()
     {
         return jda;
@@ -128,6 +147,9 @@ public class Bot
         if(shuttingDown)
             return;
         shuttingDown = true;
+        checkpoints.shutdown();
+        settings.shutdown();
+        watchdog.shutdown();
         threadpool.shutdownNow();
         if(jda.getStatus()!=JDA.Status.SHUTTING_DOWN)
         {
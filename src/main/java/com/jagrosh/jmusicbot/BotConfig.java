@@ -15,6 +15,7 @@
  */
 package com.jagrosh.jmusicbot;
 
+import com.jagrosh.jmusicbot.audio.QueueLimits;
 import com.jagrosh.jmusicbot.entities.Prompt;
 import com.jagrosh.jmusicbot.utils.OtherUtil;
 import com.jagrosh.jmusicbot.utils.TimeUtil;
@@ -40,14 +41,15 @@ public class BotConfig {
     private Path path = null;
     private String token, prefix, altprefix, helpWord, playlistsFolder, logLevel,
             successEmoji, warningEmoji, errorEmoji, loadingEmoji, searchingEmoji,
-            evalEngine;
-    private boolean stayInChannel, songInGame, npImages, updatealerts, useEval, dbots;
-    private long owner, maxSeconds, aloneTimeUntilStop;
-    private int maxYTPlaylistPages;
+            evalEngine, checkpointFile, settingsStore;
+    private boolean stayInChannel, songInGame, npImages, updatealerts, useEval, dbots, compactQueue;
+    private long owner, maxSeconds, aloneTimeUntilStop, prestart, prestartTtl, stallThreshold, checkpointInterval;
+    private int maxYTPlaylistPages, lookahead, lazyWindow;
     private double skipratio;
     private OnlineStatus status;
     private Activity game;
     private Config aliases, transforms;
+    private QueueLimits queueLimits;
 
     private boolean valid = false;
 
@@ -90,6 +92,16 @@ public class BotConfig {
             maxSeconds = config.getLong("maxtime");
             maxYTPlaylistPages = config.getInt("maxytplaylistpages");
             aloneTimeUntilStop = config.getLong("alonetimeuntilstop");
+            lookahead = config.getInt("lookahead");
+            prestart = config.getLong("prestart");
+            prestartTtl = config.getLong("prestartttl");
+            stallThreshold = config.getLong("stallthreshold");
+            compactQueue = config.getBoolean("compactqueue");
+            checkpointInterval = config.getLong("checkpointinterval");
+            checkpointFile = config.getString("checkpointfile");
+            settingsStore = config.getString("settingsstore");
+            lazyWindow = config.getInt("lazywindow");
+            queueLimits = QueueLimits.fromConfig(config.getConfig("queuelimits"));
             playlistsFolder = config.getString("playlistsfolder");
             aliases = config.getConfig("aliases");
             transforms = config.getConfig("transforms");
@@ -301,6 +313,46 @@ public class BotConfig {
         return aloneTimeUntilStop;
     }
 
+    public int getLookahead() {
+        return lookahead;
+    }
+
+    public long getPrestart() {
+        return prestart;
+    }
+
+    public long getPrestartTtl() {
+        return prestartTtl;
+    }
+
+    public long getStallThreshold() {
+        return stallThreshold;
+    }
+
+    public boolean useCompactQueue() {
+        return compactQueue;
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    public String getSettingsStore() {
+        return settingsStore;
+    }
+
+    public int getLazyWindow() {
+        return lazyWindow;
+    }
+
+    public QueueLimits getQueueLimits() {
+        return queueLimits;
+    }
+
     public boolean isTooLong(AudioTrack track) {
         if (maxSeconds <= 0)
             return false;
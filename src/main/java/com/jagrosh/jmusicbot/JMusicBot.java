@@ -27,6 +27,7 @@ import com.jagrosh.jmusicbot.commands.owner.*;
 import com.jagrosh.jmusicbot.entities.Prompt;
 import com.jagrosh.jmusicbot.gui.GUI;
 import com.jagrosh.jmusicbot.settings.SettingsManager;
+import com.jagrosh.jmusicbot.settings.SettingsStore;
 import com.jagrosh.jmusicbot.utils.OtherUtil;
 
 import java.awt.Color;
@@ -87,7 +88,7 @@ public class JMusicBot {
 
         // set up the listener
         EventWaiter waiter = new EventWaiter();
-        SettingsManager settings = new SettingsManager();
+        SettingsManager settings = new SettingsManager(SettingsStore.create(config.getSettingsStore()));
         Bot bot = new Bot(waiter, config, settings);
         CommandClient client = createCommandClient(config, settings, bot);
 
@@ -190,6 +191,7 @@ public class JMusicBot {
                         new PingCommand(),
                         new SettingsCmd(bot),
 
+                        new EtaCmd(bot),
                         new LyricsCmd(bot),
                         new NowplayingCmd(bot),
                         new PlayCmd(bot),
@@ -204,14 +206,18 @@ public class JMusicBot {
 
                         new ForceRemoveCmd(bot),
                         new ForceskipCmd(bot),
+                        new MoveRangeCmd(bot),
                         new MoveTrackCmd(bot),
                         new PauseCmd(bot),
                         new PlaynextCmd(bot),
+                        new PruneCmd(bot),
+                        new RemoveRangeCmd(bot),
                         new RepeatCmd(bot),
                         new SkiptoCmd(bot),
                         new StopCmd(bot),
                         new VolumeCmd(bot),
 
+                        new DedupCmd(bot),
                         new PrefixCmd(bot),
                         new QueueTypeCmd(bot),
                         new SetdjCmd(bot),
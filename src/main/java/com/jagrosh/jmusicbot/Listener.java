@@ -58,6 +58,8 @@ public class Listener extends ListenerAdapter
         {
             try
             {
+                if(bot.getCheckpointHandler().restore(guild))
+                    return;
                 String defpl = bot.getSettingsManager().getSettings(guild).getDefaultPlaylist();
                 VoiceChannel vc = bot.getSettingsManager().getSettings(guild).getVoiceChannel(guild);
                 if(defpl!=null && vc!=null && bot.getPlayerManager().setUpHandler(guild).playFromDefault())
@@ -16,14 +16,11 @@
 package com.jagrosh.jmusicbot.audio;
 
 import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.utils.ConcurrentLongMap;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
 
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -33,7 +30,7 @@ import java.util.concurrent.TimeUnit;
 public class AloneInVoiceHandler
 {
     private final Bot bot;
-    private final HashMap<Long, Instant> aloneSince = new HashMap<>();
+    private final ConcurrentLongMap<Instant> aloneSince = new ConcurrentLongMap<>();
     private long aloneTimeUntilStop = 0;
 
     public AloneInVoiceHandler(Bot bot)
@@ -50,25 +47,21 @@ public class AloneInVoiceHandler
     
     private void check()
     {
-        Set<Long> toRemove = new HashSet<>();
-        for(Map.Entry<Long, Instant> entrySet: aloneSince.entrySet())
+        long stopBefore = Instant.now().getEpochSecond() - aloneTimeUntilStop;
+        aloneSince.forEach((guildId, since) ->
         {
-            if(entrySet.getValue().getEpochSecond() > Instant.now().getEpochSecond() - aloneTimeUntilStop) continue;
+            if(since.getEpochSecond() > stopBefore) return;
 
-            Guild guild = bot.getJDA().getGuildById(entrySet.getKey());
+            Guild guild = bot.getJDA().getGuildById(guildId);
 
-            if(guild == null)
+            if(guild != null)
             {
-                toRemove.add(entrySet.getKey());
-                continue;
+                ((AudioHandler) guild.getAudioManager().getSendingHandler()).stopAndClear();
+                guild.getAudioManager().closeAudioConnection();
             }
 
-            ((AudioHandler) guild.getAudioManager().getSendingHandler()).stopAndClear();
-            guild.getAudioManager().closeAudioConnection();
-
-            toRemove.add(entrySet.getKey());
-        }
-        toRemove.forEach(id -> aloneSince.remove(id));
+            aloneSince.remove(guildId);
+        });
     }
 
     public void onVoiceUpdate(GuildVoiceUpdateEvent event)
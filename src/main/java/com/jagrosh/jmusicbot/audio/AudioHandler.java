@@ -18,6 +18,7 @@ package com.jagrosh.jmusicbot.audio;
 import com.jagrosh.jmusicbot.playlist.PlaylistLoader.Playlist;
 import com.jagrosh.jmusicbot.queue.AbstractQueue;
 import com.jagrosh.jmusicbot.settings.QueueType;
+import com.jagrosh.jmusicbot.utils.ConcurrentLongSet;
 import com.jagrosh.jmusicbot.utils.TimeUtil;
 import com.jagrosh.jmusicbot.settings.RepeatMode;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
@@ -25,11 +26,13 @@ import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
-import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
-import java.util.HashSet;
+import com.sedmelluq.discord.lavaplayer.track.TrackMarker;
+import com.sedmelluq.discord.lavaplayer.track.TrackMarkerHandler.MarkerState;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import com.jagrosh.jmusicbot.settings.Settings;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
 import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioTrack;
@@ -40,6 +43,7 @@ import net.dv8tion.jda.api.MessageBuilder;
 import net.dv8tion.jda.api.audio.AudioSendHandler;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.entities.User;
 import org.slf4j.LoggerFactory;
 
@@ -55,52 +59,248 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
 
 
     private final List<AudioTrack> defaultQueue = new LinkedList<>();
-    private final Set<String> votes = new HashSet<>();
+    private final ConcurrentLongSet votes = new ConcurrentLongSet();
     
     private final PlayerManager manager;
-    private final AudioPlayer audioPlayer;
     private final long guildId;
     
-    private AudioFrame lastFrame;
-    private AbstractQueue<QueuedTrack> queue;
+    private final AudioSendBuffer sendBuffer;
+    private volatile AudioPlayer audioPlayer;
+    private volatile AbstractQueue<QueuedTrack> queue;
+    
+    // the next track, already loading on a paused player so that it can be swapped in without a gap
+    private AudioPlayer standbyPlayer;
+    private QueuedTrack standbyTrack;
+    private long standbyStart;
+    
+    // time from a track starting to its first frame
+    private final AtomicLong trackChanges = new AtomicLong();
+    private final AtomicLong firstFrameTime = new AtomicLong();
+    private volatile long firstFrameWait = 0;
+    
+    // stall detection, see PlaybackWatchdog
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong recoveries = new AtomicLong();
+    private final AtomicLong recoveryTime = new AtomicLong();
+    private volatile long stallReference = System.nanoTime();
+    // the stall timer only starts once the track has produced its first frame
+    private volatile boolean framesStarted = false;
+    private AudioTrack recoveringTrack;
+    private long recoveryStart;
+    
+    // resuming a track that failed partway through
+    private final TrackResumer resumer;
+    
+    // the lazy entry at the front of the queue that starts once it has loaded, see pullPlayable
+    private volatile QueuedTrack waiting;
 
     protected AudioHandler(PlayerManager manager, Guild guild, AudioPlayer player)
     {
         this.manager = manager;
         this.audioPlayer = player;
         this.guildId = guild.getIdLong();
+        this.sendBuffer = new AudioSendBuffer(player, manager.getBot().getConfig().getLookahead());
+        this.resumer = new TrackResumer((identifier, handler) -> manager.loadItemOrdered(this, identifier, handler),
+                (task, delay) -> manager.getBot().getThreadpool().schedule(task, delay, TimeUnit.MILLISECONDS),
+                new TrackResumer.Listener()
+                {
+                    @Override
+                    public void resumed(AudioTrack failed, AudioTrack loaded, long position)
+                    {
+                        AudioHandler.this.resumed(failed, loaded, position);
+                    }
+
+                    @Override
+                    public void failed(AudioTrack failed)
+                    {
+                        resumeFailed(failed);
+                    }
+                });
 
         this.setQueueType(manager.getBot().getSettingsManager().getSettings(guildId).getQueueType());
     }
 
     public void setQueueType(QueueType type)
     {
-        queue = type.createInstance(queue);
+        AbstractQueue<QueuedTrack> previous = queue;
+        AbstractQueue<QueuedTrack> next = type.createInstance(previous);
+        next.setDeduplicating(manager.getBot().getSettingsManager().getSettings(guildId).isDedup());
+        // the items move to the new queue, so they are only counted once in the total of every queue
+        if(previous!=null)
+            previous.setSharedSize(null);
+        next.setSharedSize(manager.getQueuedSizeTotal());
+        queue = next;
     }
 
-    public int addTrackToFront(QueuedTrack qtrack)
+    public int addTrackToFront(QueuedTrack qtrack) throws QueueRejectedException
     {
-        if(audioPlayer.getPlayingTrack()==null)
+        if(audioPlayer.getPlayingTrack()==null && waiting==null)
         {
-            audioPlayer.playTrack(qtrack.getTrack());
+            playNow(qtrack);
             return -1;
         }
         else
         {
-            queue.addAt(0, qtrack);
+            AbstractQueue<QueuedTrack> queue = this.queue;
+            // checked and added in one step, so that another add cannot slip past the limits in between
+            synchronized(queue)
+            {
+                checkLimits(queue, qtrack);
+                queue.addAt(0, qtrack);
+            }
             return 0;
         }
     }
     
-    public int addTrack(QueuedTrack qtrack)
+    public int addTrack(QueuedTrack qtrack) throws QueueRejectedException
     {
-        if(audioPlayer.getPlayingTrack()==null)
+        if(audioPlayer.getPlayingTrack()==null && waiting==null)
         {
-            audioPlayer.playTrack(qtrack.getTrack());
+            playNow(qtrack);
             return -1;
         }
         else
-            return queue.add(qtrack);
+        {
+            AbstractQueue<QueuedTrack> queue = this.queue;
+            stored(qtrack);
+            synchronized(queue)
+            {
+                checkLimits(queue, qtrack);
+                return queue.add(qtrack);
+            }
+        }
+    }
+    
+    /**
+     * @throws QueueRejectedException if the entry has no track that can be played
+     */
+    private void playNow(QueuedTrack qtrack) throws QueueRejectedException
+    {
+        if(!qtrack.isLoaded() && !qtrack.isFailed())
+        {
+            // it is not waited for, but goes first and starts once it has loaded
+            queue.addAt(0, stored(qtrack));
+            startNext(false);
+            return;
+        }
+        AudioTrack track = playable(qtrack);
+        if(track==null)
+            throw new QueueRejectedException("It could not be loaded");
+        audioPlayer.playTrack(track);
+    }
+    
+    /**
+     * Adds several tracks at once, such as a loaded playlist. If nothing is
+     * playing, the first track starts playing and the rest are queued, up to
+     * the queue limits.
+     * 
+     * @param qtracks the tracks to add, in order
+     * @return the number of tracks added, which is less than the number given
+     *         if the queue is full or already has some of them
+     */
+    public int addTracks(List<QueuedTrack> qtracks)
+    {
+        if(qtracks.isEmpty())
+            return 0;
+        int start = 0;
+        boolean idle = audioPlayer.getPlayingTrack()==null && waiting==null;
+        if(idle)
+        {
+            // a lazy entry is not waited for, but queued first, and starts once it has loaded
+            AudioTrack first = null;
+            while(first==null && start<qtracks.size() && qtracks.get(start).isLoaded())
+                first = playable(qtracks.get(start++));
+            if(first!=null)
+            {
+                audioPlayer.playTrack(first);
+                idle = false;
+            }
+        }
+        qtracks.subList(start, qtracks.size()).forEach(qtrack -> stored(qtrack));
+        AbstractQueue<QueuedTrack> queue = this.queue;
+        int added;
+        synchronized(queue)
+        {
+            List<QueuedTrack> rest = queue.withoutDuplicates(qtracks.subList(start, qtracks.size()));
+            rest = rest.subList(0, fitting(queue, rest).count);
+            queue.addAll(rest);
+            added = rest.size();
+        }
+        loadAhead();
+        if(idle)
+            startNext(false);
+        return start + added;
+    }
+    
+    /**
+     * Continues playback from a checkpoint. The queue is restored in the order
+     * it was saved in, and the track starts from the position it was encoded at.
+     *
+     * @param current the track that was playing
+     * @param paused whether the player was paused
+     * @param queued the tracks that were queued
+     */
+    public void restore(AudioTrack current, boolean paused, List<QueuedTrack> queued)
+    {
+        AbstractQueue<QueuedTrack> queue = this.queue;
+        synchronized(queue)
+        {
+            for(QueuedTrack qtrack: queued)
+                queue.addAt(queue.size(), qtrack);
+        }
+        audioPlayer.setPaused(paused);
+        audioPlayer.playTrack(current);
+    }
+
+    /**
+     * @throws QueueRejectedException if the queue already has the track, or
+     *         the track does not fit within the queue limits
+     */
+    private void checkLimits(AbstractQueue<QueuedTrack> queue, QueuedTrack qtrack) throws QueueRejectedException
+    {
+        if(queue.isDuplicate(qtrack))
+            throw new QueueRejectedException("It is already in the queue");
+        String reason = limitUsage(queue, qtrack.getIdentifier()).fit(qtrack);
+        if(reason != null)
+            throw new QueueRejectedException(reason);
+    }
+    
+    /**
+     * @param qtracks tracks of the same user
+     * @return how many of the tracks, from the first, fit within the queue
+     *         limits, and why the next one does not
+     */
+    private Fitting fitting(AbstractQueue<QueuedTrack> queue, List<QueuedTrack> qtracks)
+    {
+        Fitting fitting = new Fitting();
+        if(qtracks.isEmpty())
+            return fitting;
+        QueueLimits.Usage usage = limitUsage(queue, qtracks.get(0).getIdentifier());
+        while(fitting.count < qtracks.size() && (fitting.reason = usage.fit(qtracks.get(fitting.count))) == null)
+            fitting.count++;
+        return fitting;
+    }
+    
+    private QueueLimits.Usage limitUsage(AbstractQueue<QueuedTrack> queue, long identifier)
+    {
+        return manager.getBot().getConfig().getQueueLimits().usage(queue, identifier, manager::getQueuedSize);
+    }
+    
+    private static class Fitting
+    {
+        private int count = 0;
+        private String reason;
+    }
+    
+    /**
+     * Compacts a track that is going into the queue, if the config asks for it;
+     * it is decoded again once it reaches the front of the queue
+     */
+    private QueuedTrack stored(QueuedTrack qtrack)
+    {
+        if(manager.getBot().getConfig().useCompactQueue())
+            qtrack.compact(manager);
+        return qtrack;
     }
     
     public AbstractQueue<QueuedTrack> getQueue()
@@ -108,10 +308,37 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
         return queue;
     }
     
+    /**
+     * Estimates when the entry at a position of the queue starts, from the
+     * rest of the playing track and the durations of the entries before it.
+     * Entries whose duration is not known, such as streams, count as 0.
+     * 
+     * @param index the position in the queue; a position that is no longer
+     *        in the queue, since it changed after the entry was added, counts
+     *        as the nearest end of the queue
+     * @return the time until the entry starts, in milliseconds, or -1 if a
+     *         stream is playing and it cannot be known
+     */
+    public long getTimeUntil(int index)
+    {
+        long remaining = 0;
+        AudioTrack current = audioPlayer.getPlayingTrack();
+        if(current!=null)
+        {
+            if(current.getInfo().isStream)
+                return -1;
+            remaining = Math.max(0, current.getDuration() - getPosition());
+        }
+        return remaining + queue.getDurationBefore(index);
+    }
+    
     public void stopAndClear()
     {
+        waiting = null;
+        resumer.cancel();
         queue.clear();
         defaultQueue.clear();
+        discardStandby();
         audioPlayer.stopTrack();
         //current = null;
     }
@@ -121,7 +348,7 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
         return guild(jda).getSelfMember().getVoiceState().inVoiceChannel() && audioPlayer.getPlayingTrack()!=null;
     }
     
-    public Set<String> getVotes()
+    public ConcurrentLongSet getVotes()
     {
         return votes;
     }
@@ -131,6 +358,61 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
         return audioPlayer;
     }
     
+    public AudioSendBuffer getSendBuffer()
+    {
+        return sendBuffer;
+    }
+    
+    /**
+     * @return the position of the playing track that is being heard, which
+     *         is behind the position of the player by the frames that were
+     *         pulled ahead, or 0 if nothing is playing
+     */
+    public long getPosition()
+    {
+        AudioTrack track = audioPlayer.getPlayingTrack();
+        if(track==null)
+            return 0;
+        return Math.max(0, track.getPosition() - sendBuffer.getBuffered() * 20L);
+    }
+    
+    public void setPaused(boolean paused)
+    {
+        audioPlayer.setPaused(paused);
+        if(paused)
+            dropLookahead();
+    }
+    
+    public void setVolume(int volume)
+    {
+        audioPlayer.setVolume(volume);
+        dropLookahead();
+    }
+    
+    public void seek(long position)
+    {
+        AudioTrack track = audioPlayer.getPlayingTrack();
+        if(track==null)
+            return;
+        track.setPosition(position);
+        sendBuffer.discard();
+    }
+    
+    /**
+     * Drops the frames that were pulled ahead, since they were made before a
+     * change that should be heard right away, and rewinds the track by as
+     * much so that none of it is skipped
+     */
+    private void dropLookahead()
+    {
+        AudioTrack track = audioPlayer.getPlayingTrack();
+        long position = getPosition();
+        boolean buffered = sendBuffer.getBuffered() > 0;
+        sendBuffer.discard();
+        if(buffered && track!=null && track.isSeekable())
+            track.setPosition(position);
+    }
+    
     public RequestMetadata getRequestMetadata()
     {
         if(audioPlayer.getPlayingTrack() == null)
@@ -171,19 +453,60 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
     @Override
     public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) 
     {
+        if(player!=audioPlayer)
+        {
+            // the pre-started track failed or was stopped before it was needed
+            if(player==standbyPlayer)
+                discardStandby();
+            return;
+        }
+        
+        // frames that were pulled ahead belong to a track that was cut off
+        if(endReason!=AudioTrackEndReason.FINISHED)
+            sendBuffer.discard();
+        
+        // the track was replaced by a retry of itself, which keeps its place
+        if(endReason==AudioTrackEndReason.REPLACED)
+            return;
+        
+        // the track failed partway through and is being resolved again, see onTrackException
+        if(endReason==AudioTrackEndReason.LOAD_FAILED && resumer.isResuming(track))
+            return;
+        
         RepeatMode repeatMode = manager.getBot().getSettingsManager().getSettings(guildId).getRepeatMode();
         // if the track ended normally, and we're in repeat mode, re-add it to the queue
         if(endReason==AudioTrackEndReason.FINISHED && repeatMode != RepeatMode.OFF)
         {
             QueuedTrack clone = new QueuedTrack(track.makeClone(), track.getUserData(RequestMetadata.class));
             if(repeatMode == RepeatMode.ALL)
-                queue.add(clone);
+            {
+                // when deduplicating, a copy that was queued again stands in for it
+                if(!queue.isDuplicate(clone))
+                    queue.add(stored(clone));
+            }
             else
                 queue.addAt(0, clone);
         }
         
-        if(queue.isEmpty())
+        startNext(endReason==AudioTrackEndReason.FINISHED);
+    }
+    
+    /**
+     * Starts the next entry of the queue, or the default playlist once the
+     * queue has run out
+     * 
+     * @param finished whether the previous track played to its end, so that
+     *                 a pre-started track can take over from it
+     */
+    private void startNext(boolean finished)
+    {
+        QueuedTrack qt = pullPlayable();
+        if(qt==null)
         {
+            discardStandby();
+            // the entry at the front is still loading, and starts once it has
+            if(waiting!=null)
+                return;
             if(!playFromDefault())
             {
                 manager.getBot().getNowplayingHandler().onTrackUpdate(null);
@@ -191,29 +514,395 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
                     manager.getBot().closeAudioConnection(guildId);
                 // unpause, in the case when the player was paused and the track has been skipped.
                 // this is to prevent the player being paused next time it's being used.
-                player.setPaused(false);
+                audioPlayer.setPaused(false);
             }
         }
         else
         {
-            QueuedTrack qt = queue.pull();
-            player.playTrack(qt.getTrack());
+            if(!finished || !swapInStandby(qt))
+            {
+                discardStandby();
+                audioPlayer.playTrack(qt.getTrack());
+            }
         }
     }
 
+    /**
+     * Pulls the next entry that can be played. This runs on the audio event
+     * thread, so a lazy entry at the front that is still loading is not
+     * waited for; it stays at the front, and starts from its load callback.
+     * If a lazy entry turns out to hold a playlist, the rest of it is queued
+     * right after it.
+     *
+     * @return the entry, or null if the queue ran out or its front is loading
+     */
+    private QueuedTrack pullPlayable()
+    {
+        waiting = null;
+        while(true)
+        {
+            AbstractQueue<QueuedTrack> queue = this.queue;
+            QueuedTrack qt;
+            // checking for an entry and taking it is one step, since a command may empty the queue in between
+            synchronized(queue)
+            {
+                qt = queue.getIfPresent(0);
+                if(qt==null)
+                    return null;
+                if(qt.whenLoaded(() -> frontLoaded(qt)))
+                {
+                    waiting = qt;
+                    return null;
+                }
+                queue.pull();
+            }
+            if(playable(qt)!=null)
+                return qt;
+        }
+    }
+    
+    /**
+     * Called once the lazy entry that was at the front of the queue has
+     * loaded, or failed to load, while nothing was playing
+     */
+    private void frontLoaded(QueuedTrack qt)
+    {
+        if(waiting!=qt)
+            return;
+        waiting = null;
+        if(audioPlayer.getPlayingTrack()==null)
+            startNext(false);
+    }
+    
+    /**
+     * @return the track of an entry, or null if it failed to load or is too long
+     */
+    private AudioTrack playable(QueuedTrack qt)
+    {
+        AudioTrack track = qt.getTrack();
+        if(track==null || manager.getBot().getConfig().isTooLong(track))
+            return null;
+        List<QueuedTrack> rest = new ArrayList<>();
+        for(AudioTrack loaded: qt.takeRest())
+            rest.add(new QueuedTrack(loaded, qt.getRequestMetadata().forTrack(loaded)));
+        if(rest.isEmpty())
+            return track;
+        // a lazy item that turned out to be a playlist still has to fit in the queue
+        AbstractQueue<QueuedTrack> queue = this.queue;
+        Fitting fitting;
+        synchronized(queue)
+        {
+            rest = queue.withoutDuplicates(rest);
+            fitting = fitting(queue, rest);
+            for(int i=0; i<fitting.count; i++)
+                queue.addAt(i, rest.get(i));
+        }
+        if(fitting.count < rest.size())
+            notifyDropped(qt, rest.size() - fitting.count, fitting.reason);
+        return track;
+    }
+    
+    /**
+     * Tells the user who queued a lazy entry that some of the tracks it turned
+     * out to hold were left out, in the music channel of the guild or else
+     * where the last now playing message was
+     */
+    private void notifyDropped(QueuedTrack qt, int dropped, String reason)
+    {
+        LoggerFactory.getLogger("AudioHandler").info("Left out " + dropped + " tracks that came with " + qt.getTitle() + ": " + reason);
+        JDA jda = manager.getBot().getJDA();
+        Guild guild = jda == null ? null : jda.getGuildById(guildId);
+        if(guild==null)
+            return;
+        TextChannel tc = manager.getBot().getSettingsManager().getSettings(guildId).getTextChannel(guild);
+        if(tc==null)
+            tc = manager.getBot().getNowplayingHandler().getLastNPChannel(guild);
+        if(tc==null || !tc.canTalk())
+            return;
+        tc.sendMessage(FormatUtil.filter(manager.getBot().getConfig().getWarning()+" <@"+qt.getIdentifier()+"> "+dropped
+                +" more tracks that came with **"+qt.getTitle()+"** were not queued: "+reason)).queue();
+    }
+    
+    /**
+     * Starts loading the lazy entries that are within the configured window
+     * of the front of the queue, so that they are ready by the time they play.
+     * Entries in the window that failed to load are dropped from the queue.
+     */
+    private void loadAhead()
+    {
+        AbstractQueue<QueuedTrack> queue = this.queue;
+        int window = manager.getBot().getConfig().getLazyWindow();
+        synchronized(queue)
+        {
+            QueuedTrack qt;
+            for(int i=0; i<window && (qt = queue.getIfPresent(i))!=null; )
+            {
+                if(qt.isFailed())
+                {
+                    LoggerFactory.getLogger("AudioHandler").info("Dropped " + qt.getTitle() + " from the queue, since it could not be loaded");
+                    queue.remove(i);
+                }
+                else
+                {
+                    qt.prefetch();
+                    i++;
+                }
+            }
+        }
+    }
+    
     @Override
     public void onTrackException(AudioPlayer player, AudioTrack track, FriendlyException exception) {
         LoggerFactory.getLogger("AudioHandler").error("Track " + track.getIdentifier() + " has failed to play", exception);
+        if(player==audioPlayer)
+            resumer.resume(track, exception);
+    }
+
+    @Override
+    public void onTrackStuck(AudioPlayer player, AudioTrack track, long thresholdMs)
+    {
+        if(player!=audioPlayer)
+            return;
+        synchronized(this)
+        {
+            if(audioPlayer.getPlayingTrack()==track)
+                recover(track);
+        }
     }
 
     @Override
     public void onTrackStart(AudioPlayer player, AudioTrack track) 
     {
+        // the pre-started track is announced once it is swapped in
+        if(player!=audioPlayer)
+            return;
+        trackStarted(track);
+    }
+    
+    private void trackStarted(AudioTrack track)
+    {
+        framesStarted = false;
+        stallReference = System.nanoTime();
+        // a track that starts paused would count the pause as well
+        firstFrameWait = audioPlayer.isPaused() ? 0 : stallReference;
+        resumer.started(track);
         votes.clear();
         manager.getBot().getNowplayingHandler().onTrackUpdate(track);
+        loadAhead();
+        
+        long prestart = manager.getBot().getConfig().getPrestart() * 1000;
+        if(prestart > 0 && !track.getInfo().isStream && track.getDuration() > prestart)
+        {
+            track.setMarker(new TrackMarker(track.getDuration() - prestart, state -> 
+            {
+                if(state==MarkerState.REACHED || state==MarkerState.LATE || state==MarkerState.BYPASSED)
+                    prestartNext(track);
+            }));
+        }
+    }
+    
+    // Gapless playback
+    private synchronized void prestartNext(AudioTrack current)
+    {
+        if(standbyPlayer!=null || audioPlayer.getPlayingTrack()!=current)
+            return;
+        // with single repeat, the current track is played again instead of the head of the queue
+        if(manager.getBot().getSettingsManager().getSettings(guildId).getRepeatMode()==RepeatMode.SINGLE)
+            return;
+        
+        // a clone is started so that the queued track can still be played normally if this one is discarded
+        QueuedTrack next = queue.getIfPresent(0);
+        // a lazy entry that is not loaded yet would hold up the playing track
+        if(next==null || !next.isLoaded())
+            return;
+        AudioTrack clone = next.getTrack().makeClone();
+        clone.setUserData(next.getTrack().getUserData());
+        if(clone.isSeekable())
+            clone.setPosition(next.getTrack().getPosition());
+        
+        standbyTrack = next;
+        standbyStart = System.nanoTime();
+        standbyPlayer = manager.createPlayer();
+        standbyPlayer.setVolume(audioPlayer.getVolume());
+        standbyPlayer.setPaused(true);
+        standbyPlayer.addListener(this);
+        standbyPlayer.playTrack(clone);
+    }
+    
+    private synchronized boolean swapInStandby(QueuedTrack next)
+    {
+        if(standbyPlayer==null || standbyTrack!=next || standbyPlayer.getPlayingTrack()==null)
+            return false;
+        
+        AudioPlayer previous = audioPlayer;
+        audioPlayer = standbyPlayer;
+        standbyPlayer = null;
+        standbyTrack = null;
+        
+        audioPlayer.setVolume(previous.getVolume());
+        sendBuffer.setProvider(audioPlayer);
+        audioPlayer.setPaused(false);
+        previous.destroy();
+        trackStarted(audioPlayer.getPlayingTrack());
+        return true;
+    }
+    
+    private synchronized void discardStandby()
+    {
+        if(standbyPlayer==null)
+            return;
+        AudioPlayer standby = standbyPlayer;
+        standbyPlayer = null;
+        standbyTrack = null;
+        standby.destroy();
+    }
+    
+    /**
+     * Pre-starts the next track again if the one that was pre-started is no
+     * longer next in the queue, or has been waiting for longer than the ttl.
+     * A track that waits that long, such as behind a paused player, may hold
+     * a stream url or connection that has expired by the time it plays.
+     * 
+     * @param ttl how long a pre-started track stays fresh, in milliseconds, or 0 for no limit
+     */
+    public synchronized void checkStandby(long ttl)
+    {
+        if(standbyPlayer==null)
+            return;
+        boolean stale = ttl > 0 && System.nanoTime() - standbyStart > TimeUnit.MILLISECONDS.toNanos(ttl);
+        if(!stale && queue.getIfPresent(0)==standbyTrack)
+            return;
+        discardStandby();
+        AudioTrack current = audioPlayer.getPlayingTrack();
+        long prestart = manager.getBot().getConfig().getPrestart() * 1000;
+        if(current!=null && !current.getInfo().isStream && current.getPosition() >= current.getDuration() - prestart)
+            prestartNext(current);
+    }
+    
+    /**
+     * Should be called after entries of the queue were moved or removed, so
+     * that the tracks that are now close to the front are the ones being
+     * prepared
+     */
+    public void queueChanged()
+    {
+        checkStandby(manager.getBot().getConfig().getPrestartTtl() * 1000);
+        loadAhead();
     }
 
     
+    // Stall recovery
+    /**
+     * Checks whether the playing track has stopped producing audio, and if it
+     * has for longer than the threshold, restarts it from its last position.
+     * If the restarted track stalls as well, it is skipped.
+     * 
+     * @param connected whether the bot is connected to a voice channel, since
+     *                  no audio is requested otherwise
+     * @param threshold how long a track may go without producing audio, in milliseconds
+     */
+    public synchronized void checkStall(boolean connected, long threshold)
+    {
+        long now = System.nanoTime();
+        long lastFrame = sendBuffer.getLastFrameTime();
+        if(recoveringTrack!=null && lastFrame - recoveryStart > 0)
+        {
+            recoveries.incrementAndGet();
+            recoveryTime.addAndGet(TimeUnit.NANOSECONDS.toMillis(lastFrame - recoveryStart));
+            recoveringTrack = null;
+        }
+        
+        AudioTrack track = audioPlayer.getPlayingTrack();
+        // a retry is watched from the moment it starts, since it never producing a frame is the stall
+        boolean started = framesStarted || track==recoveringTrack;
+        if(!connected || track==null || audioPlayer.isPaused() || !started)
+        {
+            stallReference = now;
+            return;
+        }
+        long lastActivity = lastFrame - stallReference > 0 ? lastFrame : stallReference;
+        if(now - lastActivity < TimeUnit.MILLISECONDS.toNanos(threshold))
+            return;
+        recover(track);
+    }
+    
+    private void recover(AudioTrack track)
+    {
+        stalls.incrementAndGet();
+        stallReference = System.nanoTime();
+        if(track==recoveringTrack)
+        {
+            LoggerFactory.getLogger("AudioHandler").warn("Track " + track.getIdentifier() + " is still stalled after a retry, skipping");
+            recoveringTrack = null;
+            audioPlayer.stopTrack();
+            return;
+        }
+        LoggerFactory.getLogger("AudioHandler").warn("Track " + track.getIdentifier() + " has stalled, retrying at " + TimeUtil.formatTime(track.getPosition()));
+        AudioTrack clone = track.makeClone();
+        clone.setUserData(track.getUserData());
+        if(clone.isSeekable())
+            clone.setPosition(track.getPosition());
+        recoveringTrack = clone;
+        recoveryStart = System.nanoTime();
+        audioPlayer.playTrack(clone);
+    }
+    
+    public long getStalls()
+    {
+        return stalls.get();
+    }
+    
+    public long getRecoveries()
+    {
+        return recoveries.get();
+    }
+    
+    /**
+     * @return the total time between detecting a stall and the first frame of the retried track, in milliseconds
+     */
+    public long getRecoveryTime()
+    {
+        return recoveryTime.get();
+    }
+    
+    public long getTrackChanges()
+    {
+        return trackChanges.get();
+    }
+    
+    /**
+     * @return the total time between tracks starting and their first frames, in milliseconds
+     */
+    public long getFirstFrameTime()
+    {
+        return firstFrameTime.get();
+    }
+    
+    // Mid-stream resume, see TrackResumer
+    private synchronized void resumed(AudioTrack failed, AudioTrack loaded, long position)
+    {
+        // the queued track applies the requested start time, so the checkpoint is set afterwards
+        QueuedTrack qt = new QueuedTrack(loaded, failed.getUserData(RequestMetadata.class));
+        loaded.setPosition(position);
+        // if something else started in the meantime, the resumed track plays next
+        if(audioPlayer.getPlayingTrack()==null)
+            audioPlayer.playTrack(loaded);
+        else
+            queue.addAt(0, qt);
+    }
+    
+    private void resumeFailed(AudioTrack failed)
+    {
+        // move on as if the track had failed without a resume
+        if(audioPlayer.getPlayingTrack()==null)
+            onTrackEnd(audioPlayer, failed, AudioTrackEndReason.LOAD_FAILED);
+    }
+    
+    public long getResumes()
+    {
+        return resumer.getResumes();
+    }
+    
     // Formatting
     public Message getNowPlaying(JDA jda)
     {
@@ -252,10 +941,11 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
             if(track.getInfo().author != null && !track.getInfo().author.isEmpty())
                 eb.setFooter("Source: " + track.getInfo().author, null);
 
-            double progress = (double)audioPlayer.getPlayingTrack().getPosition()/track.getDuration();
+            long position = getPosition();
+            double progress = (double)position/track.getDuration();
             eb.setDescription(getStatusEmoji()
                     + " "+FormatUtil.progressBar(progress)
-                    + " `[" + TimeUtil.formatTime(track.getPosition()) + "/" + TimeUtil.formatTime(track.getDuration()) + "]` "
+                    + " `[" + TimeUtil.formatTime(position) + "/" + TimeUtil.formatTime(track.getDuration()) + "]` "
                     + FormatUtil.volumeIcon(audioPlayer.getVolume()));
             
             return mb.setEmbeds(eb.build()).build();
@@ -281,38 +971,25 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
     }
     
     // Audio Send Handler methods
-    /*@Override
-    public boolean canProvide() 
-    {
-        if (lastFrame == null)
-            lastFrame = audioPlayer.provide();
-
-        return lastFrame != null;
-    }
-
-    @Override
-    public byte[] provide20MsAudio() 
-    {
-        if (lastFrame == null) 
-            lastFrame = audioPlayer.provide();
-
-        byte[] data = lastFrame != null ? lastFrame.getData() : null;
-        lastFrame = null;
-
-        return data;
-    }*/
-    
     @Override
     public boolean canProvide() 
     {
-        lastFrame = audioPlayer.provide();
-        return lastFrame != null;
+        boolean provided = sendBuffer.canProvide(audioPlayer.getPlayingTrack()!=null && !audioPlayer.isPaused());
+        if(provided && !framesStarted)
+            framesStarted = true;
+        if(provided && firstFrameWait!=0)
+        {
+            firstFrameTime.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstFrameWait));
+            trackChanges.incrementAndGet();
+            firstFrameWait = 0;
+        }
+        return provided;
     }
 
     @Override
     public ByteBuffer provide20MsAudio() 
     {
-        return ByteBuffer.wrap(lastFrame.getData());
+        return sendBuffer.provide20MsAudio();
     }
 
     @Override
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrameProvider;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves opus frames from an {@link AudioFrameProvider} to JDA without allocating
+ * anything once it has been created. The same {@link MutableAudioFrame} and
+ * {@link ByteBuffer} are reused for every 20ms packet.
+ *
+ * When a lookahead is configured, up to that many frames are pulled ahead of
+ * time into a fixed ring of off-heap slots, so that short stalls in the
+ * provider are played out of the ring instead of becoming silence. Frames are
+ * never waited for, so a frame request never holds up the audio thread.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class AudioSendBuffer
+{
+    private final static int FRAME_SIZE = StandardAudioDataFormats.DISCORD_OPUS.maximumChunkSize();
+
+    private volatile AudioFrameProvider provider;
+    private final ByteBuffer buffer;
+    private final MutableAudioFrame frame;
+    private final ByteBuffer[] ring;
+    private final AtomicLong underruns = new AtomicLong();
+    private volatile boolean discard = false;
+    private volatile long lastFrameTime = System.nanoTime();
+    private int head = 0;
+    private volatile int count = 0;
+
+    public AudioSendBuffer(AudioFrameProvider provider)
+    {
+        this(provider, 0);
+    }
+
+    public AudioSendBuffer(AudioFrameProvider provider, int lookahead)
+    {
+        this.provider = provider;
+        this.buffer = ByteBuffer.allocate(FRAME_SIZE);
+        this.frame = new MutableAudioFrame();
+        this.frame.setBuffer(buffer);
+        this.ring = new ByteBuffer[Math.max(0, lookahead)];
+        if(ring.length > 0)
+        {
+            ByteBuffer memory = ByteBuffer.allocateDirect(ring.length * FRAME_SIZE);
+            for(int i=0; i<ring.length; i++)
+            {
+                memory.limit((i + 1) * FRAME_SIZE).position(i * FRAME_SIZE);
+                ring[i] = memory.slice();
+            }
+        }
+    }
+
+    /**
+     * Pulls the next frame from the provider (or the ring) into the shared buffer
+     *
+     * @param playing whether a frame is expected right now, meaning that a track
+     *                is playing and not paused; a missing frame only counts as an
+     *                underrun in that case
+     * @return true if a frame is ready to be sent
+     */
+    public boolean canProvide(boolean playing)
+    {
+        buffer.clear();
+        if(ring.length == 0)
+        {
+            if(provider.provide(frame))
+            {
+                lastFrameTime = System.nanoTime();
+                return true;
+            }
+            if(playing)
+                underruns.incrementAndGet();
+            return false;
+        }
+
+        if(discard)
+        {
+            discard = false;
+            head = 0;
+            count = 0;
+        }
+        while(count < ring.length && pull(ring[(head + count) % ring.length]))
+            count++;
+        if(count == 0)
+        {
+            if(playing)
+                underruns.incrementAndGet();
+            return false;
+        }
+
+        buffer.put(ring[head]);
+        head = (head + 1) % ring.length;
+        count--;
+        lastFrameTime = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * @return the shared buffer, flipped so that it can be read from
+     */
+    public ByteBuffer provide20MsAudio()
+    {
+        return buffer.flip();
+    }
+
+    /**
+     * Switches to a different provider. Frames that were already pulled ahead
+     * from the previous provider are still sent first.
+     *
+     * @param provider the new provider
+     */
+    public void setProvider(AudioFrameProvider provider)
+    {
+        this.provider = provider;
+    }
+
+    /**
+     * Drops all frames that have been pulled ahead, for example because the
+     * track they belong to was stopped. This may be called from any thread;
+     * the frames are dropped the next time a frame is requested.
+     */
+    public void discard()
+    {
+        discard = true;
+    }
+
+    /**
+     * @return the number of frames that were expected but not available
+     */
+    public long getUnderruns()
+    {
+        return underruns.get();
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the last frame was handed out
+     */
+    public long getLastFrameTime()
+    {
+        return lastFrameTime;
+    }
+
+    /**
+     * @return the number of frames that were pulled ahead and not sent yet,
+     *         which the position of the playing track is ahead of what is heard
+     */
+    public int getBuffered()
+    {
+        return discard ? 0 : count;
+    }
+
+    /**
+     * @return the number of frames that can be pulled ahead of time
+     */
+    public int getLookahead()
+    {
+        return ring.length;
+    }
+
+    private boolean pull(ByteBuffer slot)
+    {
+        slot.clear();
+        frame.setBuffer(slot);
+        if(!provider.provide(frame))
+            return false;
+        slot.flip();
+        return true;
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.utils.CheckpointJournal;
+import com.jagrosh.jmusicbot.utils.OtherUtil;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.VoiceChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically saves the queue, the current track and its position of every
+ * guild to a {@link CheckpointJournal}, so that playback can continue where
+ * it left off after a restart or a crash. Tracks are saved in lavaplayer's
+ * encoded form, so restoring them does not load anything over the network.
+ *
+ * Checkpoints are incremental: a queue is only written again once it has
+ * changed, and the current track only once it has moved.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class CheckpointHandler
+{
+    private final static Logger LOG = LoggerFactory.getLogger("Checkpoint");
+    // the types of record in the journal
+    private final static byte QUEUE = 1, CURRENT = 2;
+
+    private final Bot bot;
+    private final Map<Long, Long> savedQueues = new HashMap<>();
+    private final Map<Long, String> savedPositions = new HashMap<>();
+    private Map<Long, byte[][]> restorable = Collections.emptyMap();
+    private Set<Long> active = new HashSet<>();
+    private CheckpointJournal journal;
+    
+    // tracks whose source cannot encode them, so that each is only warned about once
+    private final Set<Object> unencodable = Collections.newSetFromMap(new WeakHashMap<>());
+
+    public CheckpointHandler(Bot bot)
+    {
+        this.bot = bot;
+    }
+
+    public void init()
+    {
+        long interval = bot.getConfig().getCheckpointInterval();
+        if(interval <= 0)
+            return;
+        CheckpointJournal journal = new CheckpointJournal(OtherUtil.getPath(bot.getConfig().getCheckpointFile()));
+        try
+        {
+            restorable = journal.open();
+        }
+        catch(IOException e)
+        {
+            LOG.error("Failed to open the checkpoint journal, playback will not be checkpointed", e);
+            return;
+        }
+        synchronized(this)
+        {
+            this.journal = journal;
+            active = new HashSet<>(restorable.keySet());
+        }
+        bot.getThreadpool().scheduleWithFixedDelay(() -> checkpoint(), interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Continues playback in a guild from its last checkpoint, if it has one
+     *
+     * @param guild the guild
+     * @return true if playback was restored
+     */
+    public synchronized boolean restore(Guild guild)
+    {
+        byte[][] records = restorable.remove(guild.getIdLong());
+        if(records == null || records[CURRENT] == null)
+            return false;
+        try
+        {
+            DataInputStream in = read(records[CURRENT]);
+            VoiceChannel vc = guild.getVoiceChannelById(in.readLong());
+            if(vc == null)
+                return false;
+            boolean paused = in.readBoolean();
+            RequestMetadata rm = RequestMetadata.read(in);
+            AudioTrack current = QueuedTrack.decode(bot.getPlayerManager(), readBytes(in));
+            current.setUserData(rm);
+
+            List<QueuedTrack> queued = new ArrayList<>();
+            if(records[QUEUE] != null)
+            {
+                in = read(records[QUEUE]);
+                for(int i = in.readInt(); i > 0; i--)
+                {
+                    RequestMetadata metadata = RequestMetadata.read(in);
+                    long duration = in.readLong();
+                    queued.add(in.readBoolean() 
+                            ? new QueuedTrack(bot.getPlayerManager(), readBytes(in), metadata, duration) 
+                            : new QueuedTrack(bot.getPlayerManager(), in.readUTF(), metadata));
+                }
+            }
+
+            AudioHandler handler = bot.getPlayerManager().setUpHandler(guild);
+            handler.restore(current, paused, queued);
+            guild.getAudioManager().openAudioConnection(vc);
+            LOG.info("Restored playback in " + guild.getName() + " with " + queued.size() + " queued tracks");
+            return true;
+        }
+        catch(IOException | RuntimeException e)
+        {
+            LOG.warn("Failed to restore playback in " + guild.getName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes a final checkpoint, and stops checkpointing
+     */
+    public synchronized void shutdown()
+    {
+        if(journal == null)
+            return;
+        checkpoint();
+        try
+        {
+            journal.close();
+        }
+        catch(IOException ignored) {}
+        journal = null;
+    }
+
+    private synchronized void checkpoint()
+    {
+        JDA jda = bot.getJDA();
+        if(journal == null || jda == null)
+            return;
+        List<byte[]> records = new ArrayList<>();
+        Set<Long> playing = new HashSet<>();
+        // a guild that the bot has left, such as while it was offline, is never going to be restored
+        if(jda.getStatus() == JDA.Status.CONNECTED)
+            restorable.keySet().removeIf(guildId -> jda.getGuildById(guildId) == null && !jda.isUnavailable(guildId));
+        for(Guild guild: jda.getGuilds())
+        {
+            try
+            {
+                if(checkpoint(guild, records))
+                    playing.add(guild.getIdLong());
+            }
+            catch(IOException | RuntimeException e)
+            {
+                LOG.warn("Failed to checkpoint playback in " + guild.getId(), e);
+            }
+        }
+        // guilds that stopped playing are cleared, unless they are still waiting to be restored
+        for(long guildId: active)
+        {
+            if(playing.contains(guildId) || restorable.containsKey(guildId))
+                continue;
+            records.add(header(CheckpointJournal.CLEAR, guildId).toByteArray());
+            savedQueues.remove(guildId);
+            savedPositions.remove(guildId);
+        }
+        playing.addAll(restorable.keySet());
+        active = playing;
+        try
+        {
+            journal.append(records);
+        }
+        catch(IOException e)
+        {
+            LOG.error("Failed to write a checkpoint", e);
+        }
+    }
+
+    /**
+     * Adds the records that changed since the last checkpoint of a guild
+     *
+     * @return true if the guild is playing
+     */
+    private boolean checkpoint(Guild guild, List<byte[]> records) throws IOException
+    {
+        AudioHandler handler = (AudioHandler) guild.getAudioManager().getSendingHandler();
+        VoiceChannel vc = guild.getAudioManager().getConnectedChannel();
+        AudioTrack track = handler == null ? null : handler.getPlayer().getPlayingTrack();
+        long guildId = guild.getIdLong();
+        if(track == null)
+            return false;
+        if(vc == null)
+        {
+            // still connecting, such as right after a restore, so the last checkpoint is kept
+            return active.contains(guildId);
+        }
+
+        boolean paused = handler.getPlayer().isPaused();
+        // frames that were pulled ahead but not sent are played again after a restore
+        long heard = handler.getPosition();
+        String position = track.getIdentifier() + ":" + heard + ":" + paused + ":" + vc.getIdLong();
+        if(!position.equals(savedPositions.get(guildId)))
+        {
+            AudioTrack saved = track;
+            if(heard != track.getPosition() && track.isSeekable())
+            {
+                saved = track.makeClone();
+                saved.setPosition(heard);
+            }
+            // the encoded track includes its position
+            byte[] current = encode(saved);
+            if(current == null)
+            {
+                // playback that cannot be saved is cleared, rather than restored to an older track
+                return false;
+            }
+            Record record = header(CURRENT, guildId);
+            record.out.writeLong(vc.getIdLong());
+            record.out.writeBoolean(paused);
+            RequestMetadata rm = track.getUserData(RequestMetadata.class);
+            (rm == null ? RequestMetadata.EMPTY : rm).write(record.out);
+            writeBytes(record.out, current);
+            records.add(record.toByteArray());
+            savedPositions.put(guildId, position);
+        }
+
+        // the queue is only copied and written again once its version has changed
+        long version = handler.getQueue().getVersion();
+        Long saved = savedQueues.get(guildId);
+        if(saved == null || saved != version)
+        {
+            // a change made after the version was read is written again by the next checkpoint
+            List<QueuedTrack> queue = handler.getQueue().getList();
+            Record entries = new Record();
+            int count = 0;
+            for(QueuedTrack qtrack: queue)
+            {
+                // a lazy entry that is not loaded yet is saved as its playlist item, unless it failed to load
+                if(qtrack.isFailed())
+                    continue;
+                String item = qtrack.getItem();
+                byte[] encoded = item == null ? encode(qtrack) : null;
+                if(item == null && encoded == null)
+                    continue;
+                RequestMetadata rm = qtrack.getRequestMetadata();
+                (rm == null ? RequestMetadata.EMPTY : rm).write(entries.out);
+                entries.out.writeLong(qtrack.getDuration());
+                entries.out.writeBoolean(encoded != null);
+                if(encoded != null)
+                    writeBytes(entries.out, encoded);
+                else
+                    entries.out.writeUTF(item);
+                count++;
+            }
+            Record record = header(QUEUE, guildId);
+            record.out.writeInt(count);
+            record.out.write(entries.toByteArray());
+            records.add(record.toByteArray());
+            savedQueues.put(guildId, version);
+        }
+        return true;
+    }
+
+    /**
+     * @param track a track, or a queued entry that is loaded
+     * @return the track in lavaplayer's encoded form, or null if its source
+     *         cannot encode it, which is only logged the first time
+     */
+    private byte[] encode(Object track)
+    {
+        try
+        {
+            return track instanceof QueuedTrack
+                    ? ((QueuedTrack) track).encode(bot.getPlayerManager())
+                    : QueuedTrack.encode(bot.getPlayerManager(), (AudioTrack) track);
+        }
+        catch(IOException | RuntimeException e)
+        {
+            if(unencodable.add(track))
+                LOG.warn("A track cannot be encoded, so it is left out of checkpoints: " + e);
+            return null;
+        }
+    }
+
+    private static Record header(byte type, long guildId)
+    {
+        Record record = new Record();
+        try
+        {
+            record.out.writeByte(type);
+            record.out.writeLong(guildId);
+        }
+        catch(IOException ignored) {} // writing to memory
+        return record;
+    }
+
+    private static DataInputStream read(byte[] record) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        in.skipBytes(9); // type and guild id
+        return in;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException
+    {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static class Record
+    {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        private byte[] toByteArray()
+        {
+            return bytes.toByteArray();
+        }
+    }
+}
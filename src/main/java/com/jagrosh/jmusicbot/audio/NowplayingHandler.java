@@ -16,12 +16,9 @@
 package com.jagrosh.jmusicbot.audio;
 
 import com.jagrosh.jmusicbot.Bot;
-import com.jagrosh.jmusicbot.entities.Pair;
 import com.jagrosh.jmusicbot.settings.Settings;
+import com.jagrosh.jmusicbot.utils.ConcurrentLongMap;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Activity;
@@ -38,12 +35,12 @@ import net.dv8tion.jda.api.exceptions.RateLimitedException;
 public class NowplayingHandler
 {
     private final Bot bot;
-    private final HashMap<Long,Pair<Long,Long>> lastNP; // guild -> channel,message
+    private final ConcurrentLongMap<LastMessage> lastNP; // guild -> channel,message
     
     public NowplayingHandler(Bot bot)
     {
         this.bot = bot;
-        this.lastNP = new HashMap<>();
+        this.lastNP = new ConcurrentLongMap<>();
     }
     
     public void init()
@@ -54,7 +51,7 @@ public class NowplayingHandler
     
     public void setLastNPMessage(Message m)
     {
-        lastNP.put(m.getGuild().getIdLong(), new Pair<>(m.getTextChannel().getIdLong(), m.getIdLong()));
+        lastNP.put(m.getGuild().getIdLong(), new LastMessage(m.getTextChannel().getIdLong(), m.getIdLong()));
     }
     
     public void clearLastNPMessage(Guild guild)
@@ -62,41 +59,48 @@ public class NowplayingHandler
         lastNP.remove(guild.getIdLong());
     }
     
+    /**
+     * @return the channel of the last now playing message in the guild, or null
+     */
+    public TextChannel getLastNPChannel(Guild guild)
+    {
+        LastMessage last = lastNP.get(guild.getIdLong());
+        return last==null ? null : guild.getTextChannelById(last.channelId);
+    }
+    
     private void updateAll()
     {
-        Set<Long> toRemove = new HashSet<>();
-        for(long guildId: lastNP.keySet())
+        // entries can be removed while visiting, the map allows it
+        lastNP.forEach((guildId, last) -> 
         {
             Guild guild = bot.getJDA().getGuildById(guildId);
             if(guild==null)
             {
-                toRemove.add(guildId);
-                continue;
+                lastNP.remove(guildId);
+                return;
             }
-            Pair<Long,Long> pair = lastNP.get(guildId);
-            TextChannel tc = guild.getTextChannelById(pair.getKey());
+            TextChannel tc = guild.getTextChannelById(last.channelId);
             if(tc==null)
             {
-                toRemove.add(guildId);
-                continue;
+                lastNP.remove(guildId);
+                return;
             }
             AudioHandler handler = (AudioHandler)guild.getAudioManager().getSendingHandler();
             Message msg = handler.getNowPlaying(bot.getJDA());
             if(msg==null)
             {
                 msg = handler.getNoMusicPlaying(bot.getJDA());
-                toRemove.add(guildId);
+                lastNP.remove(guildId);
             }
             try 
             {
-                tc.editMessageById(pair.getValue(), msg).queue(m->{}, t -> lastNP.remove(guildId));
+                tc.editMessageById(last.messageId, msg).queue(m->{}, t -> lastNP.remove(guildId));
             } 
             catch(Exception e) 
             {
-                toRemove.add(guildId);
+                lastNP.remove(guildId);
             }
-        }
-        toRemove.forEach(id -> lastNP.remove(id));
+        });
     }
 
     // "event"-based methods
@@ -114,10 +118,21 @@ public class NowplayingHandler
     
     public void onMessageDelete(Guild guild, long messageId)
     {
-        Pair<Long,Long> pair = lastNP.get(guild.getIdLong());
-        if(pair==null)
+        LastMessage last = lastNP.get(guild.getIdLong());
+        if(last==null)
             return;
-        if(pair.getValue() == messageId)
+        if(last.messageId == messageId)
             lastNP.remove(guild.getIdLong());
     }
+
+    private static class LastMessage
+    {
+        private final long channelId, messageId;
+
+        private LastMessage(long channelId, long messageId)
+        {
+            this.channelId = channelId;
+            this.messageId = messageId;
+        }
+    }
 }
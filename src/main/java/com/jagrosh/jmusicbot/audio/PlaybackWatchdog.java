@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import com.jagrosh.jmusicbot.Bot;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically checks every guild for a track that is playing but has stopped
+ * producing audio, and lets its {@link AudioHandler} recover it. It also has
+ * pre-started tracks that went stale loaded again. The checks run on a thread
+ * of their own, so that they are not held up by anything else the bot has
+ * scheduled.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class PlaybackWatchdog
+{
+    private final Bot bot;
+    private long stallThreshold = 0;
+    private long prestartTtl = 0;
+    private ScheduledExecutorService checker;
+
+    public PlaybackWatchdog(Bot bot)
+    {
+        this.bot = bot;
+    }
+    
+    public void init()
+    {
+        stallThreshold = TimeUnit.SECONDS.toMillis(bot.getConfig().getStallThreshold());
+        prestartTtl = TimeUnit.SECONDS.toMillis(bot.getConfig().getPrestartTtl());
+        if(stallThreshold <= 0 && bot.getConfig().getPrestart() <= 0)
+            return;
+        checker = Executors.newSingleThreadScheduledExecutor(r -> 
+        {
+            Thread thread = new Thread(r, "PlaybackWatchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(() -> check(), 0, 1, TimeUnit.SECONDS);
+    }
+    
+    public void shutdown()
+    {
+        if(checker != null)
+            checker.shutdownNow();
+    }
+    
+    private void check()
+    {
+        JDA jda = bot.getJDA();
+        if(jda == null)
+            return;
+        for(Guild guild: jda.getGuilds())
+        {
+            AudioHandler handler = (AudioHandler) guild.getAudioManager().getSendingHandler();
+            if(handler == null)
+                continue;
+            try
+            {
+                if(stallThreshold > 0)
+                    handler.checkStall(guild.getAudioManager().isConnected(), stallThreshold);
+                handler.checkStandby(prestartTtl);
+            }
+            catch(Exception e)
+            {
+                // an exception would cancel the scheduled check for every guild
+                LoggerFactory.getLogger("PlaybackWatchdog").error("Failed to check playback in " + guild.getId(), e);
+            }
+        }
+    }
+}
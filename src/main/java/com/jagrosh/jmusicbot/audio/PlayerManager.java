@@ -30,6 +30,7 @@ import com.sedmelluq.discord.lavaplayer.source.soundcloud.SoundCloudAudioSourceM
 import com.sedmelluq.discord.lavaplayer.source.twitch.TwitchStreamAudioSourceManager;
 import com.sedmelluq.discord.lavaplayer.source.vimeo.VimeoAudioSourceManager;
 import dev.lavalink.youtube.YoutubeAudioSourceManager;
+import java.util.concurrent.atomic.AtomicLong;
 import net.dv8tion.jda.api.entities.Guild;
 
 /**
@@ -39,6 +40,7 @@ import net.dv8tion.jda.api.entities.Guild;
 public class PlayerManager extends DefaultAudioPlayerManager
 {
     private final Bot bot;
+    private final AtomicLong queuedSize = new AtomicLong();
     
     public PlayerManager(Bot bot)
     {
@@ -72,6 +74,22 @@ public class PlayerManager extends DefaultAudioPlayerManager
         return bot;
     }
     
+    /**
+     * @return the estimated heap size of the queues of every guild together, in bytes
+     */
+    public long getQueuedSize()
+    {
+        return queuedSize.get();
+    }
+    
+    /**
+     * @return the running total that every guild's queue adds its changes to
+     */
+    AtomicLong getQueuedSizeTotal()
+    {
+        return queuedSize;
+    }
+    
     public boolean hasHandler(Guild guild)
     {
         return guild.getAudioManager().getSendingHandler()!=null;
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import com.jagrosh.jmusicbot.queue.AbstractQueue;
+import com.jagrosh.jmusicbot.utils.TimeUtil;
+import com.typesafe.config.Config;
+import java.util.function.LongSupplier;
+
+/**
+ * Caps on how much a queue can hold, so that one guild or one user cannot
+ * fill up the heap for everyone else. A queue as a whole, and the tracks of
+ * each user in it, are limited by count, by total duration and by estimated
+ * heap size, and the queues of every guild together share a memory budget.
+ * A limit of 0 means no limit.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class QueueLimits
+{
+    private final long tracks, time, memory;
+    private final long userTracks, userTime, userMemory;
+    private final long totalMemory;
+
+    private QueueLimits(long tracks, long time, long memory, long userTracks, long userTime, long userMemory, long totalMemory)
+    {
+        this.tracks = tracks;
+        this.time = time;
+        this.memory = memory;
+        this.userTracks = userTracks;
+        this.userTime = userTime;
+        this.userMemory = userMemory;
+        this.totalMemory = totalMemory;
+    }
+
+    /**
+     * @param config the {@code queuelimits} block of the config, with times in
+     *        seconds, queue memory in kilobytes and the total in megabytes
+     * @return the limits
+     */
+    public static QueueLimits fromConfig(Config config)
+    {
+        return new QueueLimits(config.getLong("guild.tracks"), config.getLong("guild.time") * 1000, config.getLong("guild.memory") * 1024,
+                config.getLong("user.tracks"), config.getLong("user.time") * 1000, config.getLong("user.memory") * 1024,
+                config.getLong("totalmemory") * 1024 * 1024);
+    }
+
+    /**
+     * Works out how much of the limits a queue and one of its users have used,
+     * from the running totals the queue keeps. To check tracks against it and
+     * then add them without another thread adding in between, the caller
+     * holds the queue's lock throughout.
+     *
+     * @param queue the queue
+     * @param identifier the user
+     * @param queued the estimated size of every queue together, only asked
+     *        for if there is a memory budget
+     * @return the usage, which tracks can be checked against one by one
+     */
+    public Usage usage(AbstractQueue<QueuedTrack> queue, long identifier, LongSupplier queued)
+    {
+        Usage usage = new Usage();
+        usage.allQueuedMemory = totalMemory > 0 ? queued.getAsLong() : 0;
+        synchronized(queue)
+        {
+            usage.queuedTracks = queue.size();
+            usage.queuedTime = queue.getTotalDuration();
+            usage.queuedMemory = queue.getEstimatedSize();
+            usage.userQueuedTracks = queue.count(identifier);
+            usage.userQueuedTime = queue.getTotalDuration(identifier);
+            usage.userQueuedMemory = queue.getEstimatedSize(identifier);
+        }
+        return usage;
+    }
+
+    public class Usage
+    {
+        private long queuedTracks, queuedTime, queuedMemory;
+        private long userQueuedTracks, userQueuedTime, userQueuedMemory;
+        private long allQueuedMemory;
+
+        private Usage() {}
+
+        /**
+         * Counts a track against the limits if it fits within them
+         *
+         * @param qtrack the track
+         * @return why the track does not fit, or null if it does
+         */
+        public String fit(QueuedTrack qtrack)
+        {
+            long duration = qtrack.getDuration();
+            long size = qtrack.getEstimatedSize();
+            if(tracks > 0 && queuedTracks >= tracks)
+                return "The queue already holds the most tracks allowed (`" + tracks + "`)";
+            if(userTracks > 0 && userQueuedTracks >= userTracks)
+                return "You already have the most tracks allowed in the queue (`" + userTracks + "`)";
+            if(time > 0 && queuedTime + duration > time)
+                return "The queue would be longer than the allowed maximum (`" + TimeUtil.formatTime(time) + "`)";
+            if(userTime > 0 && userQueuedTime + duration > userTime)
+                return "Your tracks in the queue would be longer than the allowed maximum (`" + TimeUtil.formatTime(userTime) + "`)";
+            if(memory > 0 && queuedMemory + size > memory)
+                return "The queue is too large to add more tracks";
+            if(userMemory > 0 && userQueuedMemory + size > userMemory)
+                return "Your tracks in the queue are too large to add more";
+            if(totalMemory > 0 && allQueuedMemory + size > totalMemory)
+                return "The bot is queuing too many tracks right now, try again later";
+            queuedTracks++;
+            userQueuedTracks++;
+            queuedTime += duration;
+            userQueuedTime += duration;
+            queuedMemory += size;
+            userQueuedMemory += size;
+            allQueuedMemory += size;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+/**
+ * Thrown when a track cannot be queued, because it would go over the
+ * {@link QueueLimits} or because the queue already has it; the message says
+ * why, and can be shown to the user who asked for the track.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class QueueRejectedException extends Exception
+{
+    public QueueRejectedException(String reason)
+    {
+        super(reason);
+    }
+}
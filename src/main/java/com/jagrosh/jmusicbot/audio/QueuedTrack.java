@@ -16,10 +16,23 @@
 package com.jagrosh.jmusicbot.audio;
 
 import com.jagrosh.jmusicbot.utils.TimeUtil;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.DecodedTrackHolder;
 import com.jagrosh.jmusicbot.queue.Queueable;
-import net.dv8tion.jda.api.entities.User;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  *
@@ -27,8 +40,26 @@ import net.dv8tion.jda.api.entities.User;
  */
 public class QueuedTrack implements Queueable
 {
-    private final AudioTrack track;
+    // the entry, its track and its request metadata, leaving out their strings
+    private final static long BASE_SIZE = 512;
+    
+    private AudioTrack track;
     private final RequestMetadata requestMetadata;
+    private final long duration;
+    private final long size;
+    private final String key;
+    private volatile String rendered;
+    
+    // while compacted, the track is only kept in lavaplayer's encoded form
+    private AudioPlayerManager manager;
+    private byte[] encoded;
+    
+    // until it is loaded, a lazy entry only has the playlist item it came from
+    private String item;
+    private Future<Void> loading;
+    private boolean failed = false;
+    private List<AudioTrack> rest = Collections.emptyList();
+    private Runnable listener;
 
     public QueuedTrack(AudioTrack track, RequestMetadata rm)
     {
@@ -38,6 +69,57 @@ public class QueuedTrack implements Queueable
         this.requestMetadata = rm;
         if (this.track.isSeekable() && rm != null)
             track.setPosition(rm.requestInfo.startTimestamp);
+        this.duration = track.getInfo().isStream ? 0 : track.getDuration();
+        AudioTrackInfo info = track.getInfo();
+        this.size = BASE_SIZE + 2L * (length(info.title) + length(info.author) + length(info.identifier) + length(info.uri));
+        this.key = keyOf(info);
+    }
+    
+    /**
+     * Creates a lazy entry for a playlist item that has not been loaded yet.
+     * It is loaded by {@link #prefetch()} once it gets close to the front of
+     * the queue, or by {@link #getTrack()} when it is needed, which does not
+     * wait for it; {@link #whenLoaded} tells when it is ready.
+     * 
+     * @param manager the player manager to load the item with
+     * @param item the playlist item, such as a url or a search
+     * @param rm the metadata of the request
+     */
+    public QueuedTrack(AudioPlayerManager manager, String item, RequestMetadata rm)
+    {
+        this.manager = manager;
+        this.item = item;
+        this.requestMetadata = rm;
+        this.duration = 0;
+        this.size = BASE_SIZE + 2L * item.length();
+        // a url is the uri that its track turns out to have; a search has no uri until it is loaded
+        this.key = item.contains("://") ? item : null;
+    }
+    
+    /**
+     * Creates a compacted entry from a track that was encoded earlier, such as
+     * one restored from a checkpoint. It is decoded once to find its key, and
+     * then only the encoded form is kept.
+     */
+    public QueuedTrack(AudioPlayerManager manager, byte[] encoded, RequestMetadata rm, long duration)
+    {
+        this.manager = manager;
+        this.encoded = encoded;
+        this.requestMetadata = rm;
+        this.duration = duration;
+        // the encoded form holds the same strings, once decoded
+        this.size = BASE_SIZE + 2L * encoded.length;
+        String found;
+        try
+        {
+            found = keyOf(decode(manager, encoded).getInfo());
+        }
+        catch(IOException | RuntimeException e)
+        {
+            // it fails the same way when it is played, and is never a duplicate until then
+            found = null;
+        }
+        this.key = found;
     }
     
     @Override
@@ -46,9 +128,195 @@ public class QueuedTrack implements Queueable
         return requestMetadata.getOwner();
     }
     
-    public AudioTrack getTrack()
+    /**
+     * Never waits, since it is called from the audio event thread
+     * 
+     * @return the track, which is decoded first if this entry was compacted;
+     *         null if this entry is lazy and failed to load or is still
+     *         loading, in which case it starts loading
+     */
+    public synchronized AudioTrack getTrack()
+    {
+        if(item == null)
+        {
+            if(track == null)
+            {
+                track = decode();
+                manager = null;
+                encoded = null;
+            }
+            return track;
+        }
+        if(!failed)
+            load();
+        return null;
+    }
+    
+    /**
+     * Starts loading a lazy entry, and has it run an action once it has
+     * loaded or failed to load. The action runs on the thread that loaded
+     * it, and replaces any action that was given before.
+     * 
+     * @param action the action to run
+     * @return true if the action is going to run, or false if the entry is
+     *         not still loading, in which case it is not kept
+     */
+    public synchronized boolean whenLoaded(Runnable action)
+    {
+        if(item == null || failed)
+            return false;
+        load();
+        listener = action;
+        return true;
+    }
+    
+    /**
+     * Gets the entry ready to play: a lazy entry starts loading in the
+     * background, and a compacted entry is decoded
+     */
+    public synchronized void prefetch()
+    {
+        if(item != null)
+            load();
+        else if(track == null)
+            getTrack();
+    }
+    
+    /**
+     * @return false if this is a lazy entry that still has to be loaded
+     */
+    public synchronized boolean isLoaded()
+    {
+        return item == null;
+    }
+    
+    /**
+     * @return true if this is a lazy entry whose item turned out to hold no
+     *         track, or could not be loaded; it is never going to play
+     */
+    public synchronized boolean isFailed()
+    {
+        return failed;
+    }
+    
+    /**
+     * @return the other tracks that a lazy entry turned out to hold, if its
+     *         item was a playlist; these are only returned once
+     */
+    public synchronized List<AudioTrack> takeRest()
+    {
+        List<AudioTrack> tracks = rest;
+        rest = Collections.emptyList();
+        return tracks;
+    }
+    
+    /**
+     * @return the playlist item of a lazy entry that has not been loaded yet
+     */
+    synchronized String getItem()
+    {
+        return item;
+    }
+    
+    /**
+     * Replaces the track with its encoded form, which takes a fraction of the
+     * memory. It is decoded again when {@link #getTrack()} is called, without
+     * loading anything over the network.
+     * 
+     * @param manager the player manager that can decode the track again
+     * @return true if the entry is compacted
+     */
+    public synchronized boolean compact(AudioPlayerManager manager)
+    {
+        if(track == null)
+            return encoded != null;
+        try
+        {
+            this.encoded = encode(manager, track);
+            this.manager = manager;
+            this.track = null;
+            return true;
+        }
+        catch(IOException | RuntimeException e)
+        {
+            // the source of this track cannot encode it, so it stays as it is
+            return false;
+        }
+    }
+    
+    /**
+     * @param manager the player manager to encode the track with
+     * @return the track in lavaplayer's encoded form, reusing the compacted
+     *         bytes if there are any, or null if this lazy entry is not loaded
+     * @throws IOException if the source of the track cannot encode it
+     */
+    public synchronized byte[] encode(AudioPlayerManager manager) throws IOException
+    {
+        return track == null ? encoded : encode(manager, track);
+    }
+    
+    static byte[] encode(AudioPlayerManager manager, AudioTrack track) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        manager.encodeTrack(new MessageOutput(out), track);
+        return out.toByteArray();
+    }
+    
+    static AudioTrack decode(AudioPlayerManager manager, byte[] encoded) throws IOException
+    {
+        DecodedTrackHolder holder = manager.decodeTrack(new MessageInput(new ByteArrayInputStream(encoded)));
+        if(holder == null || holder.decodedTrack == null)
+            throw new IOException("The track could not be decoded");
+        return holder.decodedTrack;
+    }
+    
+    /**
+     * @return the key of a track, which is its uri, or its identifier if it has none
+     */
+    private static String keyOf(AudioTrackInfo info)
+    {
+        return info.uri == null ? info.identifier : info.uri;
+    }
+    
+    private static int length(String str)
+    {
+        return str == null ? 0 : str.length();
+    }
+    
+    public synchronized boolean isCompact()
+    {
+        return encoded != null;
+    }
+    
+    /**
+     * @return the duration known when the entry was queued, which is 0 for a
+     *         stream, and stays 0 for a lazy entry even after it is loaded
+     */
+    @Override
+    public long getDuration()
+    {
+        return duration;
+    }
+    
+    /**
+     * @return the estimated heap size of the entry once its track is loaded,
+     *         worked out when the entry was created
+     */
+    @Override
+    public long getEstimatedSize()
     {
-        return track;
+        return size;
+    }
+    
+    /**
+     * @return the uri of the track, or its identifier if it has none, which is
+     *         found the same way for a compacted entry; a lazy entry keeps the
+     *         url it was queued with, or has none if it is a search
+     */
+    @Override
+    public String getKey()
+    {
+        return key;
     }
 
     public RequestMetadata getRequestMetadata()
@@ -56,12 +324,129 @@ public class QueuedTrack implements Queueable
         return requestMetadata;
     }
 
+    /**
+     * @return the title of the track, or the playlist item if it is not loaded
+     */
+    public String getTitle()
+    {
+        AudioTrack track = peek();
+        return track == null ? getItem() : track.getInfo().title;
+    }
+
     @Override
     public String toString() 
     {
-        String entry = "`[" + TimeUtil.formatTime(track.getDuration()) + "]` ";
+        // the line never changes once the track is known, so it is only rendered once
+        String entry = rendered;
+        if(entry != null)
+            return entry;
+        AudioTrack track = peek();
+        if(track == null)
+            return "`[--:--]` **" + getItem() + "** - <@" + getIdentifier() + ">";
+        entry = "`[" + TimeUtil.formatTime(track.getDuration()) + "]` ";
         AudioTrackInfo trackInfo = track.getInfo();
         entry = entry + (trackInfo.uri.startsWith("http") ? "[**" + trackInfo.title + "**]("+trackInfo.uri+")" : "**" + trackInfo.title + "**");
-        return entry + " - <@" + track.getUserData(RequestMetadata.class).getOwner() + ">";
+        entry = entry + " - <@" + track.getUserData(RequestMetadata.class).getOwner() + ">";
+        rendered = entry;
+        return entry;
+    }
+    
+    /**
+     * @return the track for display; a compacted entry is decoded without
+     *         staying decoded, and a lazy entry that is not loaded gives null
+     */
+    private synchronized AudioTrack peek()
+    {
+        return track == null && encoded != null ? decode() : track;
+    }
+    
+    private Future<Void> load()
+    {
+        if(loading == null)
+        {
+            loading = manager.loadItem(item, new AudioLoadResultHandler()
+            {
+                @Override
+                public void trackLoaded(AudioTrack loaded)
+                {
+                    loaded(loaded, Collections.emptyList());
+                    notifyListener();
+                }
+
+                @Override
+                public void playlistLoaded(AudioPlaylist playlist)
+                {
+                    if(playlist.getTracks().isEmpty())
+                        failed();
+                    else if(playlist.isSearchResult())
+                        loaded(playlist.getTracks().get(0), Collections.emptyList());
+                    else if(playlist.getSelectedTrack() != null)
+                        loaded(playlist.getSelectedTrack(), Collections.emptyList());
+                    else
+                        loaded(playlist.getTracks().get(0), new ArrayList<>(playlist.getTracks().subList(1, playlist.getTracks().size())));
+                    notifyListener();
+                }
+
+                @Override
+                public void noMatches()
+                {
+                    failed();
+                    notifyListener();
+                }
+
+                @Override
+                public void loadFailed(FriendlyException exception)
+                {
+                    failed();
+                    notifyListener();
+                }
+            });
+        }
+        return loading;
+    }
+    
+    private synchronized void loaded(AudioTrack loaded, List<AudioTrack> others)
+    {
+        loaded.setUserData(requestMetadata == null ? RequestMetadata.EMPTY : requestMetadata);
+        track = loaded;
+        rest = others;
+        item = null;
+        loading = null;
+        manager = null;
+    }
+    
+    private synchronized void failed()
+    {
+        failed = true;
+        manager = null;
+    }
+    
+    /**
+     * Runs the action given to {@link #whenLoaded}, without holding the lock
+     */
+    private void notifyListener()
+    {
+        Runnable action;
+        synchronized(this)
+        {
+            action = listener;
+            listener = null;
+        }
+        if(action != null)
+            action.run();
+    }
+    
+    private AudioTrack decode()
+    {
+        try
+        {
+            AudioTrack decoded = decode(manager, encoded);
+            decoded.setUserData(requestMetadata == null ? RequestMetadata.EMPTY : requestMetadata);
+            return decoded;
+        }
+        catch(IOException e)
+        {
+            throw new IllegalStateException("The queued track could not be decoded", e);
+        }
     }
 }
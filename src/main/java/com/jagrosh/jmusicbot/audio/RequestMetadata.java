@@ -20,6 +20,9 @@ import com.jagrosh.jmusicbot.utils.TimeUtil;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import net.dv8tion.jda.api.entities.User;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,7 +32,7 @@ import java.util.regex.Pattern;
  */
 public class RequestMetadata
 {
-    public static final RequestMetadata EMPTY = new RequestMetadata(null, null);
+    public static final RequestMetadata EMPTY = new RequestMetadata((User) null, null);
     
     public final UserInfo user;
     public final RequestInfo requestInfo;
@@ -40,11 +43,78 @@ public class RequestMetadata
         this.requestInfo = requestInfo;
     }
     
+    private RequestMetadata(UserInfo user, RequestInfo requestInfo)
+    {
+        this.user = user;
+        this.requestInfo = requestInfo;
+    }
+    
+    /**
+     * Creates the metadata for another track of the same request, such as the
+     * rest of a playlist, sharing the user and the parsed query
+     * 
+     * @param track the other track
+     * @return the metadata for that track
+     */
+    public RequestMetadata forTrack(AudioTrack track)
+    {
+        return new RequestMetadata(user, requestInfo == null ? null 
+                : new RequestInfo(requestInfo.query, track.getInfo().uri, requestInfo.startTimestamp));
+    }
+    
     public long getOwner()
     {
         return user == null ? 0L : user.id;
     }
 
+    /**
+     * Writes this metadata in a form that {@link #read(DataInput)} can restore
+     * 
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeBoolean(user != null);
+        if(user != null)
+        {
+            out.writeLong(user.id);
+            writeString(out, user.username);
+            writeString(out, user.discrim);
+            writeString(out, user.avatar);
+        }
+        out.writeBoolean(requestInfo != null);
+        if(requestInfo != null)
+        {
+            writeString(out, requestInfo.query);
+            writeString(out, requestInfo.url);
+            out.writeLong(requestInfo.startTimestamp);
+        }
+    }
+    
+    public static RequestMetadata read(DataInput in) throws IOException
+    {
+        UserInfo user = in.readBoolean() 
+                ? new UserInfo(in.readLong(), readString(in), readString(in), readString(in)) 
+                : null;
+        RequestInfo requestInfo = in.readBoolean() 
+                ? new RequestInfo(readString(in), readString(in), in.readLong()) 
+                : null;
+        return user == null && requestInfo == null ? EMPTY : new RequestMetadata(user, requestInfo);
+    }
+    
+    private static void writeString(DataOutput out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if(value != null)
+            out.writeUTF(value);
+    }
+    
+    private static String readString(DataInput in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     public static RequestMetadata fromResultHandler(AudioTrack track, CommandEvent event)
     {
         return new RequestMetadata(event.getAuthor(), new RequestInfo(event.getArgs(), track.getInfo().uri));
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import com.jagrosh.jmusicbot.utils.TimeUtil;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves a track that failed partway through again, so that it can continue
+ * from the position it had reached. Only failures that may be temporary are
+ * retried, and each track at most {@link #MAX_ATTEMPTS} times, with the delay
+ * between attempts doubling every time.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class TrackResumer
+{
+    public final static int MAX_ATTEMPTS = 3;
+    public final static long BACKOFF = 1000; // milliseconds, doubled for every attempt
+    private final static Logger LOG = LoggerFactory.getLogger("AudioHandler");
+
+    private final Loader loader;
+    private final Scheduler scheduler;
+    private final Listener listener;
+    private final AtomicLong resumes = new AtomicLong();
+    private AudioTrack resumingTrack;
+    private String resumeIdentifier;
+    private int attempts = 0;
+
+    public TrackResumer(Loader loader, Scheduler scheduler, Listener listener)
+    {
+        this.loader = loader;
+        this.scheduler = scheduler;
+        this.listener = listener;
+    }
+
+    /**
+     * Schedules another attempt at a track that failed, if it is worth one
+     *
+     * @param track the track that failed
+     * @param exception why it failed
+     * @return true if the track is being resumed, and should not be skipped
+     */
+    public synchronized boolean resume(AudioTrack track, FriendlyException exception)
+    {
+        // the checkpoint is the last position the track reached before failing
+        long position = track.getPosition();
+        if(exception.severity==FriendlyException.Severity.COMMON || !track.isSeekable() || position <= 0)
+            return false;
+        if(!track.getIdentifier().equals(resumeIdentifier))
+        {
+            resumeIdentifier = track.getIdentifier();
+            attempts = 0;
+        }
+        if(attempts >= MAX_ATTEMPTS)
+        {
+            LOG.warn("Track " + track.getIdentifier() + " has failed " + attempts + " times, skipping");
+            return false;
+        }
+        long delay = BACKOFF << attempts;
+        attempts++;
+        resumingTrack = track;
+        LOG.info("Resuming track " + track.getIdentifier() + " at " + TimeUtil.formatTime(position) + " in " + delay + "ms");
+        scheduler.schedule(() -> loader.load(track.getIdentifier(), new AudioLoadResultHandler()
+        {
+            @Override
+            public void trackLoaded(AudioTrack loaded)
+            {
+                resumed(track, loaded, position);
+            }
+
+            @Override
+            public void playlistLoaded(AudioPlaylist playlist)
+            {
+                AudioTrack loaded = playlist.getSelectedTrack()==null && !playlist.getTracks().isEmpty()
+                        ? playlist.getTracks().get(0) : playlist.getSelectedTrack();
+                if(loaded!=null && loaded.getIdentifier().equals(track.getIdentifier()))
+                    resumed(track, loaded, position);
+                else
+                    failed(track);
+            }
+
+            @Override
+            public void noMatches()
+            {
+                failed(track);
+            }
+
+            @Override
+            public void loadFailed(FriendlyException ex)
+            {
+                LOG.warn("Track " + track.getIdentifier() + " could not be resolved again", ex);
+                failed(track);
+            }
+        }), delay);
+        return true;
+    }
+
+    /**
+     * @return true if the track failed and is waiting to be resolved again
+     */
+    public synchronized boolean isResuming(AudioTrack track)
+    {
+        return resumingTrack==track;
+    }
+
+    /**
+     * Drops the attempt in progress, so that its result is ignored
+     */
+    public synchronized void cancel()
+    {
+        resumingTrack = null;
+    }
+
+    /**
+     * Forgets the attempts made for the last track that failed, once a
+     * different track starts
+     *
+     * @param track the track that started
+     */
+    public synchronized void started(AudioTrack track)
+    {
+        if(!track.getIdentifier().equals(resumeIdentifier))
+        {
+            resumeIdentifier = null;
+            attempts = 0;
+        }
+    }
+
+    public long getResumes()
+    {
+        return resumes.get();
+    }
+
+    private void resumed(AudioTrack failed, AudioTrack loaded, long position)
+    {
+        synchronized(this)
+        {
+            if(resumingTrack!=failed)
+                return;
+            resumingTrack = null;
+        }
+        resumes.incrementAndGet();
+        listener.resumed(failed, loaded, position);
+    }
+
+    private void failed(AudioTrack failed)
+    {
+        synchronized(this)
+        {
+            if(resumingTrack!=failed)
+                return;
+            resumingTrack = null;
+        }
+        listener.failed(failed);
+    }
+
+    public interface Loader
+    {
+        void load(String identifier, AudioLoadResultHandler handler);
+    }
+
+    public interface Scheduler
+    {
+        void schedule(Runnable task, long delay);
+    }
+
+    public interface Listener
+    {
+        /**
+         * @param failed the track that failed
+         * @param loaded the same track, resolved again
+         * @param position where the failed track had reached
+         */
+        void resumed(AudioTrack failed, AudioTrack loaded, long position);
+
+        /**
+         * @param failed the track that could not be resolved again
+         */
+        void failed(AudioTrack failed);
+    }
+}
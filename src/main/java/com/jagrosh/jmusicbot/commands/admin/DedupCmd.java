@@ -0,0 +1,68 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.commands.admin;
+
+import com.jagrosh.jdautilities.command.CommandEvent;
+import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.audio.AudioHandler;
+import com.jagrosh.jmusicbot.commands.AdminCommand;
+import com.jagrosh.jmusicbot.settings.Settings;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class DedupCmd extends AdminCommand
+{
+    private final Bot bot;
+    
+    public DedupCmd(Bot bot)
+    {
+        this.bot = bot;
+        this.name = "dedup";
+        this.help = "keeps a track from being queued again while it is already in the queue";
+        this.arguments = "[on|off]";
+        this.aliases = bot.getConfig().getAliases(this.name);
+    }
+
+    @Override
+    protected void execute(CommandEvent event)
+    {
+        String args = event.getArgs();
+        Settings settings = event.getClient().getSettingsFor(event.getGuild());
+        boolean value;
+        if(args.isEmpty())
+            value = !settings.isDedup();
+        else if(args.equalsIgnoreCase("true") || args.equalsIgnoreCase("on"))
+            value = true;
+        else if(args.equalsIgnoreCase("false") || args.equalsIgnoreCase("off"))
+            value = false;
+        else
+        {
+            event.replyError("Valid options are `on` or `off` (or leave empty to toggle)");
+            return;
+        }
+        bot.getSettingsManager().editSettings(event.getGuild()).setDedup(value);
+
+        AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
+        if(handler != null)
+            handler.getQueue().setDeduplicating(value);
+
+        event.replySuccess(value 
+                ? "Tracks that are already in the queue will no longer be added again." 
+                : "Tracks can now be added to the queue more than once.");
+    }
+}
@@ -18,7 +18,6 @@ package com.jagrosh.jmusicbot.commands.admin;
 import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.commands.AdminCommand;
-import com.jagrosh.jmusicbot.settings.Settings;
 
 /**
  *
@@ -26,8 +25,11 @@ import com.jagrosh.jmusicbot.settings.Settings;
  */
 public class PrefixCmd extends AdminCommand
 {
+    private final Bot bot;
+    
     public PrefixCmd(Bot bot)
     {
+        this.bot = bot;
         this.name = "prefix";
         this.help = "sets a server-specific prefix";
         this.arguments = "<prefix|NONE>";
@@ -43,15 +45,14 @@ public class PrefixCmd extends AdminCommand
             return;
         }
         
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
         if(event.getArgs().equalsIgnoreCase("none"))
         {
-            s.setPrefix(null);
+            bot.getSettingsManager().editSettings(event.getGuild()).setPrefix(null);
             event.replySuccess("Prefix cleared.");
         }
         else
         {
-            s.setPrefix(event.getArgs());
+            bot.getSettingsManager().editSettings(event.getGuild()).setPrefix(event.getArgs());
             event.replySuccess("Custom prefix set to `" + event.getArgs() + "` on *" + event.getGuild().getName() + "*");
         }
     }
@@ -28,9 +28,12 @@ import com.jagrosh.jmusicbot.settings.Settings;
  */
 public class QueueTypeCmd extends AdminCommand
 {
+    private final Bot bot;
+    
     public QueueTypeCmd(Bot bot)
     {
         super();
+        this.bot = bot;
         this.name = "queuetype";
         this.help = "changes the queue type";
         this.arguments = "[" + String.join("|", QueueType.getNames()) + "]";
@@ -63,7 +66,7 @@ public class QueueTypeCmd extends AdminCommand
 
         if (settings.getQueueType() != value)
         {
-            settings.setQueueType(value);
+            bot.getSettingsManager().editSettings(event.getGuild()).setQueueType(value);
 
             AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
             if (handler != null)
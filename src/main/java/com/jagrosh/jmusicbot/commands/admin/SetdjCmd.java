@@ -20,7 +20,6 @@ import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jdautilities.commons.utils.FinderUtil;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.commands.AdminCommand;
-import com.jagrosh.jmusicbot.settings.Settings;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
 import net.dv8tion.jda.api.entities.Role;
 
@@ -30,8 +29,11 @@ import net.dv8tion.jda.api.entities.Role;
  */
 public class SetdjCmd extends AdminCommand
 {
+    private final Bot bot;
+    
     public SetdjCmd(Bot bot)
     {
+        this.bot = bot;
         this.name = "setdj";
         this.help = "sets the DJ role for certain music commands";
         this.arguments = "<rolename|NONE>";
@@ -46,10 +48,9 @@ public class SetdjCmd extends AdminCommand
             event.reply(event.getClient().getError()+" Please include a role name or NONE");
             return;
         }
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
         if(event.getArgs().equalsIgnoreCase("none"))
         {
-            s.setDJRole(null);
+            bot.getSettingsManager().editSettings(event.getGuild()).setDJRole(null);
             event.reply(event.getClient().getSuccess()+" DJ role cleared; Only Admins can use the DJ commands.");
         }
         else
@@ -61,7 +62,7 @@ public class SetdjCmd extends AdminCommand
                 event.reply(event.getClient().getWarning()+FormatUtil.listOfRoles(list, event.getArgs()));
             else
             {
-                s.setDJRole(list.get(0));
+                bot.getSettingsManager().editSettings(event.getGuild()).setDJRole(list.get(0));
                 event.reply(event.getClient().getSuccess()+" DJ commands can now be used by users with the **"+list.get(0).getName()+"** role.");
             }
         }
@@ -20,7 +20,6 @@ import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jdautilities.commons.utils.FinderUtil;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.commands.AdminCommand;
-import com.jagrosh.jmusicbot.settings.Settings;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
 import net.dv8tion.jda.api.entities.TextChannel;
 
@@ -30,8 +29,11 @@ import net.dv8tion.jda.api.entities.TextChannel;
  */
 public class SettcCmd extends AdminCommand 
 {
+    private final Bot bot;
+    
     public SettcCmd(Bot bot)
     {
+        this.bot = bot;
         this.name = "settc";
         this.help = "sets the text channel for music commands";
         this.arguments = "<channel|NONE>";
@@ -46,10 +48,9 @@ public class SettcCmd extends AdminCommand
             event.reply(event.getClient().getError()+" Please include a text channel or NONE");
             return;
         }
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
         if(event.getArgs().equalsIgnoreCase("none"))
         {
-            s.setTextChannel(null);
+            bot.getSettingsManager().editSettings(event.getGuild()).setTextChannel(null);
             event.reply(event.getClient().getSuccess()+" Music commands can now be used in any channel");
         }
         else
@@ -61,7 +62,7 @@ public class SettcCmd extends AdminCommand
                 event.reply(event.getClient().getWarning()+FormatUtil.listOfTChannels(list, event.getArgs()));
             else
             {
-                s.setTextChannel(list.get(0));
+                bot.getSettingsManager().editSettings(event.getGuild()).setTextChannel(list.get(0));
                 event.reply(event.getClient().getSuccess()+" Music commands can now only be used in <#"+list.get(0).getId()+">");
             }
         }
@@ -20,7 +20,6 @@ import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jdautilities.commons.utils.FinderUtil;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.commands.AdminCommand;
-import com.jagrosh.jmusicbot.settings.Settings;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
 import net.dv8tion.jda.api.entities.VoiceChannel;
 
@@ -30,8 +29,11 @@ import net.dv8tion.jda.api.entities.VoiceChannel;
  */
 public class SetvcCmd extends AdminCommand 
 {
+    private final Bot bot;
+    
     public SetvcCmd(Bot bot)
     {
+        this.bot = bot;
         this.name = "setvc";
         this.help = "sets the voice channel for playing music";
         this.arguments = "<channel|NONE>";
@@ -46,10 +48,9 @@ public class SetvcCmd extends AdminCommand
             event.reply(event.getClient().getError()+" Please include a voice channel or NONE");
             return;
         }
-        Settings s = event.getClient().getSettingsFor(event.getGuild());
         if(event.getArgs().equalsIgnoreCase("none"))
         {
-            s.setVoiceChannel(null);
+            bot.getSettingsManager().editSettings(event.getGuild()).setVoiceChannel(null);
             event.reply(event.getClient().getSuccess()+" Music can now be played in any channel");
         }
         else
@@ -61,7 +62,7 @@ public class SetvcCmd extends AdminCommand
                 event.reply(event.getClient().getWarning()+FormatUtil.listOfVChannels(list, event.getArgs()));
             else
             {
-                s.setVoiceChannel(list.get(0));
+                bot.getSettingsManager().editSettings(event.getGuild()).setVoiceChannel(list.get(0));
                 event.reply(event.getClient().getSuccess()+" Music can now only be played in "+list.get(0).getAsMention());
             }
         }
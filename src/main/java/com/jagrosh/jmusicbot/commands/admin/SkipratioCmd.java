@@ -26,8 +26,11 @@ import com.jagrosh.jmusicbot.settings.Settings;
  */
 public class SkipratioCmd extends AdminCommand
 {
+    private final Bot bot;
+    
     public SkipratioCmd(Bot bot)
     {
+        this.bot = bot;
         this.name = "setskip";
         this.help = "sets a server-specific skip percentage";
         this.arguments = "<0 - 100>";
@@ -45,7 +48,7 @@ public class SkipratioCmd extends AdminCommand
                 event.replyError("The provided value must be between 0 and 100!");
                 return;
             }
-            Settings s = event.getClient().getSettingsFor(event.getGuild());
+            Settings s = bot.getSettingsManager().editSettings(event.getGuild());
             s.setSkipRatio(val / 100.0);
             event.replySuccess("Skip percentage has been set to `" + val + "%` of listeners on *" + event.getGuild().getName() + "*");
         }
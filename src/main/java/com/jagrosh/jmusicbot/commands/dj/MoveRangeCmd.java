@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.commands.dj;
+
+import com.jagrosh.jdautilities.command.CommandEvent;
+import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.audio.AudioHandler;
+import com.jagrosh.jmusicbot.audio.QueuedTrack;
+import com.jagrosh.jmusicbot.commands.DJCommand;
+import com.jagrosh.jmusicbot.queue.AbstractQueue;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class MoveRangeCmd extends DJCommand
+{
+    public MoveRangeCmd(Bot bot)
+    {
+        super(bot);
+        this.name = "moverange";
+        this.help = "moves the tracks from one position to another so that they start at a new position";
+        this.arguments = "<from> <to> <position>";
+        this.aliases = bot.getConfig().getAliases(this.name);
+        this.bePlaying = true;
+    }
+
+    @Override
+    public void doCommand(CommandEvent event)
+    {
+        String[] parts = event.getArgs().split("\\s+");
+        if(parts.length < 3)
+        {
+            event.replyError("Please include the first and last positions of the tracks, and where to move them.");
+            return;
+        }
+        int from, to, position;
+        try
+        {
+            from = Integer.parseInt(parts[0]);
+            to = Integer.parseInt(parts[1]);
+            position = Integer.parseInt(parts[2]);
+        }
+        catch(NumberFormatException e)
+        {
+            event.replyError("Please provide three valid positions.");
+            return;
+        }
+        AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
+        AbstractQueue<QueuedTrack> queue = handler.getQueue();
+        synchronized(queue)
+        {
+            if(from < 1 || to < from || to > queue.size())
+            {
+                event.replyError("Positions must be valid integers from 1 to "+queue.size()+", with the first one no larger than the second!");
+                return;
+            }
+            // the new position counts the queue without the moved tracks
+            int last = queue.size() - (to - from);
+            if(position < 1 || position > last)
+            {
+                event.replyError("The new position must be a valid integer from 1 to "+last+"!");
+                return;
+            }
+            queue.moveRange(from - 1, to, position - 1);
+        }
+        handler.queueChanged();
+        event.replySuccess("Moved the tracks at positions `"+from+"` to `"+to+"` to start at position `"+position+"`.");
+    }
+}
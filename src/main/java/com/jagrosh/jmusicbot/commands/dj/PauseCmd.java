@@ -44,7 +44,7 @@ public class PauseCmd extends DJCommand
             event.replyWarning("The player is already paused! Use `"+event.getClient().getPrefix()+"play` to unpause!");
             return;
         }
-        handler.getPlayer().setPaused(true);
+        handler.setPaused(true);
         event.replySuccess("Paused **"+handler.getPlayer().getPlayingTrack().getInfo().title+"**. Type `"+event.getClient().getPrefix()+"play` to unpause!");
     }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.commands.dj;
+
+import com.jagrosh.jdautilities.command.CommandEvent;
+import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.audio.AudioHandler;
+import com.jagrosh.jmusicbot.audio.QueuedTrack;
+import com.jagrosh.jmusicbot.commands.DJCommand;
+import com.jagrosh.jmusicbot.utils.FormatUtil;
+import com.jagrosh.jmusicbot.utils.TimeUtil;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import net.dv8tion.jda.api.entities.User;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class PruneCmd extends DJCommand
+{
+    public PruneCmd(Bot bot)
+    {
+        super(bot);
+        this.name = "prune";
+        this.help = "removes every track requested by the mentioned users, longer than a time, from a source, or that is queued twice";
+        this.arguments = "<users <@user...>|longer <time>|source <name>|duplicates>";
+        this.aliases = bot.getConfig().getAliases(this.name);
+        this.bePlaying = true;
+    }
+
+    @Override
+    public void doCommand(CommandEvent event)
+    {
+        String[] parts = event.getArgs().split("\\s+", 2);
+        String value = parts.length < 2 ? "" : parts[1].trim();
+        AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
+        List<QueuedTrack> removed;
+        String what;
+        switch(parts[0].toLowerCase())
+        {
+            case "users":
+            case "user":
+                Set<Long> users = event.getMessage().getMentionedUsers().stream().map(User::getIdLong).collect(Collectors.toSet());
+                if(users.isEmpty())
+                {
+                    event.replyError("Please mention the users whose tracks should be removed.");
+                    return;
+                }
+                removed = handler.getQueue().removeIf(qtrack -> users.contains(qtrack.getIdentifier()));
+                what = "requested by " + (users.size() == 1 ? "that user" : "those users");
+                break;
+            case "longer":
+                long max = TimeUtil.parseColonTime(value);
+                if(value.isEmpty() || max <= 0)
+                {
+                    event.replyError("Please include a time, such as `10:00`.");
+                    return;
+                }
+                // tracks without a known duration, such as streams, are kept
+                removed = handler.getQueue().removeIf(qtrack -> qtrack.getDuration() > max);
+                what = "longer than `" + TimeUtil.formatTime(max) + "`";
+                break;
+            case "source":
+                if(value.isEmpty())
+                {
+                    event.replyError("Please include a source, such as `soundcloud`.");
+                    return;
+                }
+                String source = value.toLowerCase();
+                removed = handler.getQueue().removeIf(qtrack -> qtrack.getKey() != null && qtrack.getKey().toLowerCase().contains(source));
+                what = "from `" + FormatUtil.filter(value) + "`";
+                break;
+            case "duplicates":
+                removed = handler.getQueue().removeDuplicates();
+                what = "that were already in the queue";
+                break;
+            default:
+                event.replyError("Valid options are `users`, `longer`, `source` or `duplicates`.");
+                return;
+        }
+        handler.queueChanged();
+        if(removed.isEmpty())
+            event.replyWarning("There are no tracks in the queue " + what + "!");
+        else
+            event.replySuccess("Removed `" + removed.size() + "` tracks " + what + ".");
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.commands.dj;
+
+import com.jagrosh.jdautilities.command.CommandEvent;
+import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.audio.AudioHandler;
+import com.jagrosh.jmusicbot.audio.QueuedTrack;
+import com.jagrosh.jmusicbot.commands.DJCommand;
+import com.jagrosh.jmusicbot.queue.AbstractQueue;
+import java.util.List;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class RemoveRangeCmd extends DJCommand
+{
+    public RemoveRangeCmd(Bot bot)
+    {
+        super(bot);
+        this.name = "removerange";
+        this.help = "removes every track from one position to another";
+        this.arguments = "<from> <to>";
+        this.aliases = bot.getConfig().getAliases(this.name);
+        this.bePlaying = true;
+    }
+
+    @Override
+    public void doCommand(CommandEvent event)
+    {
+        String[] parts = event.getArgs().split("\\s+", 2);
+        int from, to;
+        try
+        {
+            from = Integer.parseInt(parts[0]);
+            to = parts.length < 2 ? -1 : Integer.parseInt(parts[1]);
+        }
+        catch(NumberFormatException e)
+        {
+            event.replyError("Please provide two valid positions.");
+            return;
+        }
+        AudioHandler handler = (AudioHandler) event.getGuild().getAudioManager().getSendingHandler();
+        AbstractQueue<QueuedTrack> queue = handler.getQueue();
+        List<QueuedTrack> removed;
+        synchronized(queue)
+        {
+            if(from < 1 || to < from || to > queue.size())
+            {
+                event.replyError("Positions must be valid integers from 1 to "+queue.size()+", with the first one no larger than the second!");
+                return;
+            }
+            removed = queue.removeRange(from - 1, to);
+        }
+        handler.queueChanged();
+        event.replySuccess("Removed `"+removed.size()+"` tracks from positions `"+from+"` to `"+to+"`.");
+    }
+}
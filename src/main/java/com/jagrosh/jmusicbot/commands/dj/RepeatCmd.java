@@ -68,7 +68,7 @@ public class RepeatCmd extends DJCommand
             event.replyError("Valid options are `off`, `all` or `single` (or leave empty to toggle between `off` and `all`)");
             return;
         }
-        settings.setRepeatMode(value);
+        bot.getSettingsManager().editSettings(event.getGuild()).setRepeatMode(value);
         event.replySuccess("Repeat mode is now `"+value.getUserFriendlyName()+"`");
     }
 
@@ -67,6 +67,7 @@ public class SettingsCmd extends Command
                         + "\nQueue Type: " + (s.getQueueType() == QueueType.FAIR
                                                 ? s.getQueueType().getUserFriendlyName()
                                                 : "**"+s.getQueueType().getUserFriendlyName()+"**")
+                        + "\nDeduplicate Queue: " + (s.isDedup() ? "**On**" : "Off")
                         + "\nDefault Playlist: " + (s.getDefaultPlaylist() == null ? "None" : "**" + s.getDefaultPlaylist() + "**")
                         )
                 .setFooter(event.getJDA().getGuilds().size() + " servers | "
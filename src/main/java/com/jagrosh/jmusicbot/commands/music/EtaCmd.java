@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.commands.music;
+
+import com.jagrosh.jdautilities.command.CommandEvent;
+import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.audio.AudioHandler;
+import com.jagrosh.jmusicbot.audio.QueuedTrack;
+import com.jagrosh.jmusicbot.commands.MusicCommand;
+import com.jagrosh.jmusicbot.utils.FormatUtil;
+import com.jagrosh.jmusicbot.utils.TimeUtil;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class EtaCmd extends MusicCommand
+{
+    public EtaCmd(Bot bot)
+    {
+        super(bot);
+        this.name = "eta";
+        this.help = "shows when your next song, or the song at a position, will play";
+        this.arguments = "[position]";
+        this.aliases = bot.getConfig().getAliases(this.name);
+        this.bePlaying = true;
+    }
+
+    @Override
+    public void doCommand(CommandEvent event)
+    {
+        AudioHandler handler = (AudioHandler)event.getGuild().getAudioManager().getSendingHandler();
+        int index;
+        if(event.getArgs().isEmpty())
+        {
+            index = handler.getQueue().firstIndexOf(event.getAuthor().getIdLong());
+            if(index < 0)
+            {
+                event.replyWarning("You don't have any songs in the queue!");
+                return;
+            }
+        }
+        else
+        {
+            try
+            {
+                index = Integer.parseInt(event.getArgs()) - 1;
+            }
+            catch(NumberFormatException e)
+            {
+                index = -1;
+            }
+        }
+        QueuedTrack qt = handler.getQueue().getIfPresent(index);
+        if(qt == null)
+        {
+            event.replyError("Position must be a valid integer between 1 and "+handler.getQueue().size()+"!");
+            return;
+        }
+        String title = qt.getTitle();
+        long eta = handler.getTimeUntil(index);
+        if(eta < 0)
+            event.replyWarning("**"+FormatUtil.filter(title)+"** is at position "+(index+1)
+                    +", but a live stream is playing, so there is no telling when it will play.");
+        else
+            event.replySuccess("**"+FormatUtil.filter(title)+"** is at position "+(index+1)
+                    +" and plays in about `"+TimeUtil.formatTime(eta)+"`.");
+    }
+}
@@ -27,12 +27,16 @@ import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jdautilities.menu.ButtonMenu;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.audio.AudioHandler;
+import com.jagrosh.jmusicbot.audio.QueueRejectedException;
 import com.jagrosh.jmusicbot.audio.QueuedTrack;
 import com.jagrosh.jmusicbot.commands.DJCommand;
 import com.jagrosh.jmusicbot.commands.MusicCommand;
 import com.jagrosh.jmusicbot.playlist.PlaylistLoader.Playlist;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.exceptions.PermissionException;
@@ -71,7 +75,7 @@ public class PlayCmd extends MusicCommand
             {
                 if(DJCommand.checkDJPermission(event))
                 {
-                    handler.getPlayer().setPaused(false);
+                    handler.setPaused(false);
                     event.replySuccess("Resumed **"+handler.getPlayer().getPlayingTrack().getInfo().title+"**.");
                 }
                 else
@@ -97,6 +101,7 @@ public class PlayCmd extends MusicCommand
         private final Message m;
         private final CommandEvent event;
         private final boolean ytsearch;
+        private int omitted = 0; // tracks of a playlist that the queue did not take
         
         private ResultHandler(Message m, CommandEvent event, boolean ytsearch)
         {
@@ -114,9 +119,19 @@ public class PlayCmd extends MusicCommand
                 return;
             }
             AudioHandler handler = (AudioHandler)event.getGuild().getAudioManager().getSendingHandler();
-            int pos = handler.addTrack(new QueuedTrack(track, RequestMetadata.fromResultHandler(track, event)))+1;
+            int pos;
+            try
+            {
+                pos = handler.addTrack(new QueuedTrack(track, RequestMetadata.fromResultHandler(track, event)))+1;
+            }
+            catch(QueueRejectedException e)
+            {
+                m.editMessage(FormatUtil.filter(event.getClient().getWarning()+" **"+track.getInfo().title+"** was not added: "+e.getMessage())).queue();
+                return;
+            }
             String addMsg = FormatUtil.filter(event.getClient().getSuccess()+" Added **"+track.getInfo().title
-                    +"** (`"+ TimeUtil.formatTime(track.getDuration())+"`) "+(pos==0?"to begin playing":" to the queue at position "+pos));
+                    +"** (`"+ TimeUtil.formatTime(track.getDuration())+"`) "+(pos==0?"to begin playing":" to the queue at position "+pos
+                    +FormatUtil.eta(handler.getTimeUntil(pos-1))));
             if(playlist==null || !event.getSelfMember().hasPermission(event.getTextChannel(), Permission.MESSAGE_ADD_REACTION))
                 m.editMessage(addMsg).queue();
             else
@@ -129,7 +144,7 @@ public class PlayCmd extends MusicCommand
                         .setAction(re ->
                         {
                             if(re.getName().equals(LOAD))
-                                m.editMessage(addMsg+"\n"+event.getClient().getSuccess()+" Loaded **"+loadPlaylist(playlist, track)+"** additional tracks!").queue();
+                                m.editMessage(addMsg+"\n"+event.getClient().getSuccess()+" Loaded **"+loadPlaylist(playlist, track)+"** additional tracks!"+queueFull()).queue();
                             else
                                 m.editMessage(addMsg).queue();
                         }).setFinalAction(m ->
@@ -141,16 +156,25 @@ public class PlayCmd extends MusicCommand
         
         private int loadPlaylist(AudioPlaylist playlist, AudioTrack exclude)
         {
-            int[] count = {0};
-            playlist.getTracks().stream().forEach((track) -> {
+            List<QueuedTrack> tracks = new ArrayList<>(playlist.getTracks().size());
+            RequestMetadata rm = null;
+            for(AudioTrack track: playlist.getTracks())
+            {
                 if(!bot.getConfig().isTooLong(track) && !track.equals(exclude))
                 {
-                    AudioHandler handler = (AudioHandler)event.getGuild().getAudioManager().getSendingHandler();
-                    handler.addTrack(new QueuedTrack(track, RequestMetadata.fromResultHandler(track, event)));
-                    count[0]++;
+                    rm = rm == null ? RequestMetadata.fromResultHandler(track, event) : rm.forTrack(track);
+                    tracks.add(new QueuedTrack(track, rm));
                 }
-            });
-            return count[0];
+            }
+            AudioHandler handler = (AudioHandler)event.getGuild().getAudioManager().getSendingHandler();
+            int count = handler.addTracks(tracks);
+            omitted = tracks.size() - count;
+            return count;
+        }
+        
+        private String queueFull()
+        {
+            return omitted==0 ? "" : "\n"+event.getClient().getWarning()+" **"+omitted+"** tracks were not added, because the queue is full or already has them.";
         }
         
         @Override
@@ -180,6 +204,11 @@ public class PlayCmd extends MusicCommand
                     m.editMessage(FormatUtil.filter(event.getClient().getWarning()+" The playlist "+(playlist.getName()==null ? "" : "(**"+playlist.getName()
                             +"**) ")+" could not be loaded or contained 0 entries")).queue();
                 }
+                else if(count==0 && omitted>0)
+                {
+                    m.editMessage(FormatUtil.filter(event.getClient().getWarning()+" No tracks from the playlist "+(playlist.getName()==null ? "" : "(**"+playlist.getName()
+                            +"**) ")+"were added, because the queue is full or already has them")).queue();
+                }
                 else if(count==0)
                 {
                     m.editMessage(FormatUtil.filter(event.getClient().getWarning()+" All entries in this playlist "+(playlist.getName()==null ? "" : "(**"+playlist.getName()
@@ -190,8 +219,9 @@ public class PlayCmd extends MusicCommand
                     m.editMessage(FormatUtil.filter(event.getClient().getSuccess()+" Found "
                             +(playlist.getName()==null?"a playlist":"playlist **"+playlist.getName()+"**")+" with `"
                             + playlist.getTracks().size()+"` entries; added to the queue!"
-                            + (count<playlist.getTracks().size() ? "\n"+event.getClient().getWarning()+" Tracks longer than the allowed maximum (`"
-                            + bot.getConfig().getMaxTime()+"`) have been omitted." : ""))).queue();
+                            + (count+omitted<playlist.getTracks().size() ? "\n"+event.getClient().getWarning()+" Tracks longer than the allowed maximum (`"
+                            + bot.getConfig().getMaxTime()+"`) have been omitted." : "")
+                            + queueFull())).queue();
                 }
             }
         }
@@ -245,10 +275,32 @@ public class PlayCmd extends MusicCommand
             event.getChannel().sendMessage(loadingEmoji+" Loading playlist **"+event.getArgs()+"**... ("+playlist.getItems().size()+" items)").queue(m -> 
             {
                 AudioHandler handler = (AudioHandler)event.getGuild().getAudioManager().getSendingHandler();
-                playlist.loadTracks(bot.getPlayerManager(), (at)->handler.addTrack(new QueuedTrack(at, RequestMetadata.fromResultHandler(at, event))), () -> {
+                if(bot.getConfig().getLazyWindow()>0)
+                {
+                    // the items are only loaded once they get close to the front of the queue
+                    List<QueuedTrack> tracks = new ArrayList<>(playlist.getItems().size());
+                    playlist.getItems().forEach(item -> tracks.add(new QueuedTrack(bot.getPlayerManager(), item, 
+                            new RequestMetadata(event.getAuthor(), new RequestMetadata.RequestInfo(event.getArgs(), item)))));
+                    int count = handler.addTracks(tracks);
+                    m.editMessage(FormatUtil.filter(event.getClient().getSuccess()+" Queued **"+count
+                            +"** items from **"+playlist.getName()+"**! They will be loaded as they come up."
+                            +(count<tracks.size() ? "\n"+event.getClient().getWarning()+" **"+(tracks.size()-count)
+                            +"** items were not added, because the queue is full or already has them." : ""))).queue();
+                    return;
+                }
+                AtomicInteger omitted = new AtomicInteger();
+                playlist.loadTrackBatches(bot.getPlayerManager(), (batch) -> 
+                {
+                    List<QueuedTrack> tracks = new ArrayList<>(batch.size());
+                    batch.forEach(at -> tracks.add(new QueuedTrack(at, RequestMetadata.fromResultHandler(at, event))));
+                    omitted.addAndGet(tracks.size() - handler.addTracks(tracks));
+                }, () -> {
                     StringBuilder builder = new StringBuilder(playlist.getTracks().isEmpty() 
                             ? event.getClient().getWarning()+" No tracks were loaded!" 
                             : event.getClient().getSuccess()+" Loaded **"+playlist.getTracks().size()+"** tracks!");
+                    if(omitted.get()>0)
+                        builder.append("\n").append(event.getClient().getWarning()).append(" **").append(omitted.get())
+                                .append("** tracks were not added, because the queue is full or already has them.");
                     if(!playlist.getErrors().isEmpty())
                         builder.append("\nThe following tracks failed to load:");
                     playlist.getErrors().forEach(err -> builder.append("\n`[").append(err.getIndex()+1).append("]` **").append(err.getItem()).append("**: ").append(err.getReason()));
@@ -17,21 +17,22 @@ package com.jagrosh.jmusicbot.commands.music;
 
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import com.jagrosh.jdautilities.command.CommandEvent;
-import com.jagrosh.jdautilities.menu.Paginator;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.audio.AudioHandler;
 import com.jagrosh.jmusicbot.audio.QueuedTrack;
 import com.jagrosh.jmusicbot.commands.MusicCommand;
+import com.jagrosh.jmusicbot.queue.AbstractQueue;
 import com.jagrosh.jmusicbot.settings.QueueType;
 import com.jagrosh.jmusicbot.settings.RepeatMode;
 import com.jagrosh.jmusicbot.settings.Settings;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
+import com.jagrosh.jmusicbot.utils.LazyPaginator;
 import com.jagrosh.jmusicbot.utils.TimeUtil;
 import net.dv8tion.jda.api.MessageBuilder;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.exceptions.PermissionException;
 
 /**
  *
@@ -39,7 +40,7 @@ import net.dv8tion.jda.api.exceptions.PermissionException;
  */
 public class QueueCmd extends MusicCommand 
 {
-    private final Paginator.Builder builder;
+    private final LazyPaginator paginator;
     
     public QueueCmd(Bot bot)
     {
@@ -50,16 +51,7 @@ public class QueueCmd extends MusicCommand
         this.aliases = bot.getConfig().getAliases(this.name);
         this.bePlaying = true;
         this.botPermissions = new Permission[]{Permission.MESSAGE_ADD_REACTION,Permission.MESSAGE_EMBED_LINKS};
-        builder = new Paginator.Builder()
-                .setColumns(1)
-                .setFinalAction(m -> {try{m.clearReactions().queue();}catch(PermissionException ignore){}})
-                .setItemsPerPage(10)
-                .waitOnSinglePage(false)
-                .useNumberedItems(true)
-                .showPageNumbers(true)
-                .wrapPageEnds(true)
-                .setEventWaiter(bot.getWaiter())
-                .setTimeout(1, TimeUnit.MINUTES);
+        paginator = new LazyPaginator(bot.getWaiter(), 10, 1, TimeUnit.MINUTES);
     }
 
     @Override
@@ -72,7 +64,15 @@ public class QueueCmd extends MusicCommand
         }
         catch(NumberFormatException ignore){}
         AudioHandler ah = (AudioHandler)event.getGuild().getAudioManager().getSendingHandler();
-        List<QueuedTrack> list = ah.getQueue().getList();
+        AbstractQueue<QueuedTrack> queue = ah.getQueue();
+        List<QueuedTrack> list;
+        long total;
+        // the count and the duration in the title are read together with the entries, so they agree
+        synchronized(queue)
+        {
+            list = queue.getList();
+            total = queue.getTotalDuration();
+        }
         if(list.isEmpty())
         {
             Message nowp = ah.getNowPlaying(event.getJDA());
@@ -87,21 +87,12 @@ public class QueueCmd extends MusicCommand
             });
             return;
         }
-        String[] songs = new String[list.size()];
-        long total = 0;
-        for(int i=0; i<list.size(); i++)
-        {
-            total += list.get(i).getTrack().getDuration();
-            songs[i] = list.get(i).toString();
-        }
+        // only the entries of the page that is shown are rendered, so a compacted entry is only decoded when it is looked at
         Settings settings = event.getClient().getSettingsFor(event.getGuild());
-        long fintotal = total;
-        builder.setText((i1,i2) -> getQueueTitle(ah, event.getClient().getSuccess(), songs.length, fintotal, settings.getRepeatMode(), settings.getQueueType()))
-                .setItems(songs)
-                .setUsers(event.getAuthor())
-                .setColor(event.getSelfMember().getColor())
-                ;
-        builder.build().paginate(event.getChannel(), pagenum);
+        paginator.paginate(event.getChannel(), event.getAuthor(), event.getSelfMember().getColor(), list.size(),
+                (i1,i2) -> getQueueTitle(ah, event.getClient().getSuccess(), list.size(), total, settings.getRepeatMode(), settings.getQueueType()),
+                (from,to) -> list.subList(from, to).stream().map(QueuedTrack::toString).collect(Collectors.toList()),
+                pagenum);
     }
     
     private String getQueueTitle(AudioHandler ah, String success, int songslength, long total, RepeatMode repeatmode, QueueType queueType)
@@ -53,6 +53,7 @@ public class RemoveCmd extends MusicCommand
         if(event.getArgs().equalsIgnoreCase("all"))
         {
             int count = handler.getQueue().removeAll(event.getAuthor().getIdLong());
+            handler.queueChanged();
             if(count==0)
                 event.replyWarning("You don't have any songs in the queue!");
             else
@@ -65,7 +66,8 @@ public class RemoveCmd extends MusicCommand
         } catch(NumberFormatException e) {
             pos = 0;
         }
-        if(pos<1 || pos>handler.getQueue().size())
+        QueuedTrack qt = handler.getQueue().getIfPresent(pos-1);
+        if(qt==null)
         {
             event.replyError("Position must be a valid integer between 1 and "+handler.getQueue().size()+"!");
             return;
@@ -74,27 +76,33 @@ public class RemoveCmd extends MusicCommand
         boolean isDJ = event.getMember().hasPermission(Permission.MANAGE_SERVER);
         if(!isDJ)
             isDJ = event.getMember().getRoles().contains(settings.getRole(event.getGuild()));
-        QueuedTrack qt = handler.getQueue().get(pos-1);
-        if(qt.getIdentifier()==event.getAuthor().getIdLong())
+        boolean own = qt.getIdentifier()==event.getAuthor().getIdLong();
+        if((own || isDJ) && !handler.getQueue().remove(pos-1, qt))
         {
-            handler.getQueue().remove(pos-1);
-            event.replySuccess("Removed **"+qt.getTrack().getInfo().title+"** from the queue");
+            // the queue changed since the entry was looked up, so something else is at that position now
+            event.replyWarning("The queue changed meanwhile, so **"+qt.getTitle()+"** is no longer at position "+pos+"!");
+            return;
+        }
+        if(own)
+        {
+            handler.queueChanged();
+            event.replySuccess("Removed **"+qt.getTitle()+"** from the queue");
         }
         else if(isDJ)
         {
-            handler.getQueue().remove(pos-1);
+            handler.queueChanged();
             User u;
             try {
                 u = event.getJDA().getUserById(qt.getIdentifier());
             } catch(Exception e) {
                 u = null;
             }
-            event.replySuccess("Removed **"+qt.getTrack().getInfo().title
+            event.replySuccess("Removed **"+qt.getTitle()
                     +"** from the queue (requested by "+(u==null ? "someone" : "**"+u.getName()+"**")+")");
         }
         else
         {
-            event.replyError("You cannot remove **"+qt.getTrack().getInfo().title+"** because you didn't add it!");
+            event.replyError("You cannot remove **"+qt.getTitle()+"** because you didn't add it!");
         }
     }
 }
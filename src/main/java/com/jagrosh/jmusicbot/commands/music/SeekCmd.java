@@ -71,7 +71,7 @@ public class SeekCmd extends MusicCommand
             return;
         }
 
-        long currentPosition = playingTrack.getPosition();
+        long currentPosition = handler.getPosition();
         long trackDuration = playingTrack.getDuration();
 
         long seekMilliseconds = seekTime.relative ? currentPosition + seekTime.milliseconds : seekTime.milliseconds;
@@ -83,7 +83,7 @@ public class SeekCmd extends MusicCommand
         
         try
         {
-            playingTrack.setPosition(seekMilliseconds);
+            handler.seek(seekMilliseconds);
         }
         catch (Exception e)
         {
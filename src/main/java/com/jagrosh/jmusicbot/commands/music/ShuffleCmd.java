@@ -41,6 +41,7 @@ public class ShuffleCmd extends MusicCommand
     {
         AudioHandler handler = (AudioHandler)event.getGuild().getAudioManager().getSendingHandler();
         int s = handler.getQueue().shuffle(event.getAuthor().getIdLong());
+        handler.queueChanged();
         switch (s) 
         {
             case 0:
@@ -57,15 +57,15 @@ public class SkipCmd extends MusicCommand
             int listeners = (int)event.getSelfMember().getVoiceState().getChannel().getMembers().stream()
                     .filter(m -> !m.getUser().isBot() && !m.getVoiceState().isDeafened()).count();
             String msg;
-            if(handler.getVotes().contains(event.getAuthor().getId()))
+            if(handler.getVotes().contains(event.getAuthor().getIdLong()))
                 msg = event.getClient().getWarning()+" You already voted to skip this song `[";
             else
             {
                 msg = event.getClient().getSuccess()+" You voted to skip the song `[";
-                handler.getVotes().add(event.getAuthor().getId());
+                handler.getVotes().add(event.getAuthor().getIdLong());
             }
             int skippers = (int)event.getSelfMember().getVoiceState().getChannel().getMembers().stream()
-                    .filter(m -> handler.getVotes().contains(m.getUser().getId())).count();
+                    .filter(m -> handler.getVotes().contains(m.getUser().getIdLong())).count();
             int required = (int)Math.ceil(listeners * skipRatio);
             msg += skippers + " votes, " + required + "/" + listeners + " needed]`";
             if(skippers>=required)
@@ -18,7 +18,6 @@ package com.jagrosh.jmusicbot.commands.owner;
 import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.commands.OwnerCommand;
-import com.jagrosh.jmusicbot.settings.Settings;
 
 /**
  *
@@ -48,8 +47,7 @@ public class AutoplaylistCmd extends OwnerCommand
         }
         if(event.getArgs().equalsIgnoreCase("none"))
         {
-            Settings settings = event.getClient().getSettingsFor(event.getGuild());
-            settings.setDefaultPlaylist(null);
+            bot.getSettingsManager().editSettings(event.getGuild()).setDefaultPlaylist(null);
             event.reply(event.getClient().getSuccess()+" Cleared the default playlist for **"+event.getGuild().getName()+"**");
             return;
         }
@@ -60,8 +58,7 @@ public class AutoplaylistCmd extends OwnerCommand
         }
         else
         {
-            Settings settings = event.getClient().getSettingsFor(event.getGuild());
-            settings.setDefaultPlaylist(pname);
+            bot.getSettingsManager().editSettings(event.getGuild()).setDefaultPlaylist(pname);
             event.reply(event.getClient().getSuccess()+" The default playlist for **"+event.getGuild().getName()+"** is now `"+pname+"`");
         }
     }
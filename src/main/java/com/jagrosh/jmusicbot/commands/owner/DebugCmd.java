@@ -18,12 +18,15 @@ package com.jagrosh.jmusicbot.commands.owner;
 import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jdautilities.commons.JDAUtilitiesInfo;
 import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.audio.AudioHandler;
 import com.jagrosh.jmusicbot.commands.OwnerCommand;
+import com.jagrosh.jmusicbot.settings.SettingsManager;
 import com.jagrosh.jmusicbot.utils.OtherUtil;
 import com.sedmelluq.discord.lavaplayer.tools.PlayerLibrary;
 import net.dv8tion.jda.api.JDAInfo;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.ChannelType;
+import net.dv8tion.jda.api.entities.Guild;
 
 /**
  *
@@ -72,9 +75,40 @@ public class DebugCmd extends OwnerCommand
         sb.append("\n\nRuntime Information:")
                 .append("\n  Total Memory = ").append(total)
                 .append("\n  Used Memory = ").append(used);
+        long handlers = 0, underruns = 0, stalls = 0, recoveries = 0, recoveryTime = 0, resumes = 0, trackChanges = 0, firstFrameTime = 0;
+        for(Guild guild: event.getJDA().getGuilds())
+        {
+            AudioHandler handler = (AudioHandler)guild.getAudioManager().getSendingHandler();
+            if(handler==null)
+                continue;
+            handlers++;
+            underruns += handler.getSendBuffer().getUnderruns();
+            stalls += handler.getStalls();
+            recoveries += handler.getRecoveries();
+            recoveryTime += handler.getRecoveryTime();
+            resumes += handler.getResumes();
+            trackChanges += handler.getTrackChanges();
+            firstFrameTime += handler.getFirstFrameTime();
+        }
+        sb.append("\n\nPlayback Information:")
+                .append("\n  Audio Handlers = ").append(handlers)
+                .append("\n  Lookahead Frames = ").append(bot.getConfig().getLookahead())
+                .append("\n  Underruns = ").append(underruns)
+                .append("\n  Stalls = ").append(stalls)
+                .append("\n  Recovered Stalls = ").append(recoveries)
+                .append("\n  Average Recovery Time = ").append(recoveries==0 ? 0 : recoveryTime / recoveries).append("ms")
+                .append("\n  Resumed Tracks = ").append(resumes)
+                .append("\n  Average Time To First Frame = ").append(trackChanges==0 ? 0 : firstFrameTime / trackChanges).append("ms");
+        long guilds = event.getJDA().getGuildCache().size();
+        long stored = bot.getSettingsManager().getStoredCount();
+        long defaults = Math.max(0, guilds - stored);
+        sb.append("\n\nSettings Information:")
+                .append("\n  Guilds With Own Settings = ").append(stored)
+                .append("\n  Guilds Using Defaults = ").append(defaults)
+                .append("\n  Estimated Memory Saved By Defaults = ~").append(defaults * SettingsManager.ESTIMATED_SIZE / 1024).append("KB");
         sb.append("\n\nDiscord Information:")
                 .append("\n  ID = ").append(event.getJDA().getSelfUser().getId())
-                .append("\n  Guilds = ").append(event.getJDA().getGuildCache().size())
+                .append("\n  Guilds = ").append(guilds)
                 .append("\n  Users = ").append(event.getJDA().getUserCache().size());
         sb.append("\n```");
         
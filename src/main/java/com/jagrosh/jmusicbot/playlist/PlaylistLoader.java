@@ -156,6 +156,15 @@ public class PlaylistLoader
         }
         
         public void loadTracks(AudioPlayerManager manager, Consumer<AudioTrack> consumer, Runnable callback)
+        {
+            loadTrackBatches(manager, batch -> batch.forEach(consumer), callback);
+        }
+        
+        /**
+         * Loads the tracks like {@link #loadTracks}, but hands over every
+         * playlist found among the items as a whole, instead of track by track
+         */
+        public void loadTrackBatches(AudioPlayerManager manager, Consumer<List<AudioTrack>> consumer, Runnable callback)
         {
             if(loaded)
                 return;
@@ -186,7 +195,7 @@ public class PlaylistLoader
                         {
                             at.setUserData(0L);
                             tracks.add(at);
-                            consumer.accept(at);
+                            consumer.accept(Collections.singletonList(at));
                         }
                         done();
                     }
@@ -216,7 +225,7 @@ public class PlaylistLoader
                             loaded.removeIf(track -> config.isTooLong(track));
                             loaded.forEach(at -> at.setUserData(0L));
                             tracks.addAll(loaded);
-                            loaded.forEach(at -> consumer.accept(at));
+                            consumer.accept(loaded);
                         }
                         done();
                     }
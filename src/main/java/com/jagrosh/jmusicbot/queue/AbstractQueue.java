@@ -16,10 +16,25 @@
 package com.jagrosh.jmusicbot.queue;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 /**
+ * Every change to the queue holds the queue's lock, since tracks are added
+ * and removed from command threads as well as from the audio event thread.
+ * A caller that checks the queue and then changes it has to do both in one
+ * call, such as {@link #pollFirst()} or {@link #remove(int, Queueable)}, or
+ * hold the lock itself, since the queue can change in between.
  *
  * @author Wolfgang Schwendtbauer
  * @param <T>
@@ -28,103 +43,578 @@ public abstract class AbstractQueue<T extends Queueable>
 {
     protected AbstractQueue(AbstractQueue<T> queue)
     {
-        this.list = queue != null ? queue.getList() : new LinkedList<>();
+        this(queue, QueueStore.LINKED);
+    }
+
+    protected AbstractQueue(AbstractQueue<T> queue, QueueStore store)
+    {
+        if(queue == null)
+            this.list = store.create(null);
+        else
+        {
+            synchronized(queue)
+            {
+                this.list = store.create(queue.list);
+            }
+        }
+        for(T item: list)
+            added(item);
     }
 
     protected final List<T> list;
+    
+    // the number of items each identifier has in the list, kept up to date by every change
+    protected final LongLongMap owners = new LongLongMap();
+    private final LongLongMap ownerDurations = new LongLongMap();
+    private final LongLongMap ownerSizes = new LongLongMap();
+    private long totalDuration = 0;
+    private long totalSize = 0;
+    
+    // a total of the estimated sizes of several queues, which this one adds its changes to
+    private AtomicLong sharedSize;
+    
+    // the number of items with each key, only kept while deduplicating
+    private Map<String, Integer> keys;
+    
+    // every change to any queue gets a new version, so a version is never reused by a replaced queue
+    private final static AtomicLong VERSIONS = new AtomicLong();
+    private long version = VERSIONS.incrementAndGet();
+    
+    // the copy handed out by getList, until the next change
+    private volatile List<T> snapshot;
 
     public abstract int add(T item);
 
-    public void addAt(int index, T item)
+    /**
+     * Adds several items at once; readers see either none or all of them
+     *
+     * @param items the items to add, in order
+     */
+    public synchronized void addAll(Collection<? extends T> items)
+    {
+        for(T item: items)
+            add(item);
+    }
+
+    public synchronized void addAt(int index, T item)
     {
         if(index >= list.size())
             list.add(item);
         else
             list.add(index, item);
+        added(item);
+        changed();
     }
 
-    public int size() {
+    public synchronized int size() {
         return list.size();
     }
 
-    public T pull() {
-        return list.remove(0);
+    public synchronized T pull() {
+        T item = list.remove(0);
+        removed(item);
+        changed();
+        return item;
+    }
+
+    /**
+     * @return the item that was first in the queue, or null if it was empty
+     */
+    public synchronized T pollFirst()
+    {
+        return list.isEmpty() ? null : pull();
     }
 
-    public boolean isEmpty()
+    public synchronized boolean isEmpty()
     {
         return list.isEmpty();
     }
 
+    /**
+     * Gets a copy of the queue that does not change. The copy is kept until
+     * the queue changes, so reading it again in between does not take the
+     * lock. A chunked queue shares its chunks with the copy, so making one
+     * takes time in the number of chunks; a linked queue is copied in full.
+     * Holding the lock while calling this and other getters, such as
+     * {@link #getTotalDuration()}, makes them agree with each other.
+     *
+     * @return an immutable copy of the queue as it is now
+     */
     public List<T> getList()
     {
-        return list;
+        List<T> copy = snapshot;
+        if(copy != null)
+            return copy;
+        synchronized(this)
+        {
+            if(snapshot == null)
+                snapshot = list instanceof ChunkedList
+                        ? ((ChunkedList<T>) list).snapshot()
+                        : Collections.unmodifiableList(new ArrayList<>(list));
+            return snapshot;
+        }
+    }
+
+    /**
+     * @return a number that changes whenever the queue changes, and that no
+     *         other queue ever has
+     */
+    public synchronized long getVersion()
+    {
+        return version;
     }
 
-    public T get(int index) {
+    public synchronized T get(int index) {
         return list.get(index);
     }
 
-    public T remove(int index)
+    /**
+     * @return the item at the position, or null if there is none
+     */
+    public synchronized T getIfPresent(int index)
+    {
+        return index < 0 || index >= list.size() ? null : list.get(index);
+    }
+
+    public synchronized T remove(int index)
+    {
+        T item = list.remove(index);
+        removed(item);
+        changed();
+        return item;
+    }
+
+    /**
+     * @return the removed item, or null if there is none at the position
+     */
+    public synchronized T removeIfPresent(int index)
+    {
+        return index < 0 || index >= list.size() ? null : remove(index);
+    }
+
+    /**
+     * Removes an item only if it is still at the position, such as one that
+     * was looked at with {@link #getIfPresent} before deciding to remove it
+     *
+     * @param index the position of the item
+     * @param item the item that is expected there
+     * @return true if the item was removed
+     */
+    public synchronized boolean remove(int index, T item)
     {
-        return list.remove(index);
+        if(getIfPresent(index) != item)
+            return false;
+        remove(index);
+        return true;
     }
 
-    public int removeAll(long identifier)
+    public synchronized int removeAll(long identifier)
     {
-        int count = 0;
-        for(int i=list.size()-1; i>=0; i--)
+        int count = count(identifier);
+        int remaining = count;
+        for(Iterator<T> it = list.iterator(); remaining > 0 && it.hasNext(); )
         {
-            if(list.get(i).getIdentifier()==identifier)
+            T item = it.next();
+            if(item.getIdentifier()==identifier)
             {
-                list.remove(i);
-                count++;
+                it.remove();
+                removed(item);
+                remaining--;
             }
         }
+        if(count > 0)
+            changed();
         return count;
     }
 
-    public void clear()
+    /**
+     * Removes the items in a range in one pass
+     *
+     * @param from the first position to remove
+     * @param to the position after the last one to remove
+     * @return the removed items, in order
+     */
+    public synchronized List<T> removeRange(int from, int to)
     {
+        List<T> range = list.subList(from, to);
+        List<T> removed = new ArrayList<>(range);
+        range.clear();
+        for(T item: removed)
+            removed(item);
+        if(!removed.isEmpty())
+            changed();
+        return removed;
+    }
+
+    /**
+     * Removes every item that matches a filter in one pass, and packs the
+     * rest back together in their order
+     *
+     * @param filter the filter, which is given the items in order
+     * @return the removed items, in order
+     */
+    public synchronized List<T> removeIf(Predicate<? super T> filter)
+    {
+        List<T> kept = new ArrayList<>(list.size());
+        List<T> removed = new ArrayList<>();
+        for(T item: list)
+            (filter.test(item) ? removed : kept).add(item);
+        if(removed.isEmpty())
+            return removed;
         list.clear();
+        list.addAll(kept);
+        for(T item: removed)
+            removed(item);
+        changed();
+        return removed;
+    }
+
+    /**
+     * Removes every item with the same key as an item before it
+     *
+     * @return the removed items, in order
+     */
+    public synchronized List<T> removeDuplicates()
+    {
+        Set<String> seen = new HashSet<>();
+        return removeIf(item -> item.getKey() != null && !seen.add(item.getKey()));
+    }
+
+    public synchronized void clear()
+    {
+        list.clear();
+        owners.clear();
+        ownerDurations.clear();
+        ownerSizes.clear();
+        if(sharedSize != null)
+            sharedSize.addAndGet(-totalSize);
+        totalDuration = 0;
+        totalSize = 0;
+        if(keys != null)
+            keys.clear();
+        changed();
+    }
+
+    /**
+     * Shuffles the items with the given identifier among their positions.
+     * The list is copied out and put back in one pass each, since getting
+     * and setting every position on its own is slow in either store.
+     *
+     * @param identifier the identifier whose items are shuffled
+     * @return the number of items that were shuffled
+     */
+    public synchronized int shuffle(long identifier)
+    {
+        int count = count(identifier);
+        if(count == 0)
+            return 0;
+        List<T> items = new ArrayList<>(list);
+        int[] positions = new int[count];
+        for(int index=0, found=0; found<count; index++)
+            if(items.get(index).getIdentifier()==identifier)
+                positions[found++] = index;
+        Random random = ThreadLocalRandom.current();
+        for(int j=count-1; j>0; j--)
+        {
+            int first = positions[j];
+            int second = positions[random.nextInt(j + 1)];
+            if(first == second)
+                continue;
+            T temp = items.get(first);
+            items.set(first, items.get(second));
+            items.set(second, temp);
+            swapped(items.get(first), items.get(second));
+        }
+        list.clear();
+        list.addAll(items);
+        changed();
+        return count;
+    }
+
+    /**
+     * @param identifier the identifier to count
+     * @return the number of items with the given identifier
+     */
+    public synchronized int count(long identifier)
+    {
+        return (int) owners.get(identifier, 0);
+    }
+
+    /**
+     * @return the total duration of the items, in milliseconds
+     */
+    public synchronized long getTotalDuration()
+    {
+        return totalDuration;
+    }
+
+    /**
+     * @return the estimated heap size of the items, in bytes
+     */
+    public synchronized long getEstimatedSize()
+    {
+        return totalSize;
+    }
+
+    /**
+     * @param identifier the identifier to add up
+     * @return the total duration of the items with the given identifier, in milliseconds
+     */
+    public synchronized long getTotalDuration(long identifier)
+    {
+        return ownerDurations.get(identifier, 0);
+    }
+
+    /**
+     * @param identifier the identifier to add up
+     * @return the estimated heap size of the items with the given identifier, in bytes
+     */
+    public synchronized long getEstimatedSize(long identifier)
+    {
+        return ownerSizes.get(identifier, 0);
+    }
+
+    /**
+     * Keeps a running total of the estimated size of several queues up to
+     * date with the changes to this one. The items already in this queue are
+     * added to the new total, and taken out of the previous one.
+     *
+     * @param total the total to add to, or null to stop
+     */
+    public synchronized void setSharedSize(AtomicLong total)
+    {
+        if(sharedSize != null)
+            sharedSize.addAndGet(-totalSize);
+        sharedSize = total;
+        if(sharedSize != null)
+            sharedSize.addAndGet(totalSize);
+    }
+
+    /**
+     * @param index a position in the queue, or the size of the queue for its
+     *        end; a position past either end, such as one that was removed
+     *        since it was looked up, counts as that end
+     * @return the total duration of the items before the position, in milliseconds
+     */
+    public synchronized long getDurationBefore(int index)
+    {
+        index = Math.max(0, Math.min(index, list.size()));
+        if(list instanceof ChunkedList)
+            return ((ChunkedList<T>) list).weightBefore(index);
+        long total = 0;
+        Iterator<T> it = list.iterator();
+        for(int i=0; i<index; i++)
+            total += it.next().getDuration();
+        return total;
+    }
+
+    /**
+     * @param identifier the identifier to look for
+     * @return the position of the first item with the given identifier, or -1
+     */
+    public synchronized int firstIndexOf(long identifier)
+    {
+        if(count(identifier) == 0)
+            return -1;
+        int index = 0;
+        for(T item: list)
+        {
+            if(item.getIdentifier() == identifier)
+                return index;
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * Starts or stops keeping an index of the keys of the items, which
+     * {@link #isDuplicate} and {@link #withoutDuplicates} look items up in
+     *
+     * @param deduplicating whether duplicates are looked for
+     */
+    public synchronized void setDeduplicating(boolean deduplicating)
+    {
+        if(!deduplicating)
+            keys = null;
+        else if(keys == null)
+        {
+            keys = new HashMap<>();
+            for(T item: list)
+                index(item.getKey(), 1);
+        }
+    }
+
+    public synchronized boolean isDeduplicating()
+    {
+        return keys != null;
+    }
+
+    /**
+     * @param item an item that is not in the queue
+     * @return true if the queue is deduplicating and already has an item with
+     *         the same key
+     */
+    public synchronized boolean isDuplicate(T item)
+    {
+        return keys != null && item.getKey() != null && keys.containsKey(item.getKey());
     }
 
-    public int shuffle(long identifier)
+    /**
+     * @param items items that are not in the queue
+     * @return the items, leaving out the duplicates of items in the queue and
+     *         of items before them, if the queue is deduplicating
+     */
+    public synchronized List<T> withoutDuplicates(List<T> items)
     {
-        List<Integer> iset = new ArrayList<>();
-        for(int i=0; i<list.size(); i++)
+        if(keys == null)
+            return items;
+        List<T> unique = new ArrayList<>(items.size());
+        Set<String> seen = new HashSet<>();
+        for(T item: items)
         {
-            if(list.get(i).getIdentifier()==identifier)
-                iset.add(i);
+            String key = item.getKey();
+            if(key == null || (!keys.containsKey(key) && seen.add(key)))
+                unique.add(item);
         }
-        for(int j=0; j<iset.size(); j++)
+        return unique;
+    }
+
+    /**
+     * Finds the positions of every item with the given identifier, stopping
+     * as soon as the last one has been found
+     *
+     * @param identifier the identifier to look for
+     * @return the positions, in ascending order
+     */
+    public synchronized int[] positionsOf(long identifier)
+    {
+        int[] positions = new int[count(identifier)];
+        int found = 0;
+        int index = 0;
+        for(Iterator<T> it = list.iterator(); found < positions.length && it.hasNext(); index++)
         {
-            int first = iset.get(j);
-            int second = iset.get((int)(Math.random()*iset.size()));
-            T temp = list.get(first);
-            list.set(first, list.get(second));
-            list.set(second, temp);
+            if(it.next().getIdentifier()==identifier)
+                positions[found++] = index;
         }
-        return iset.size();
+        return positions;
     }
 
-    public void skip(int number)
+    public synchronized void skip(int number)
     {
         if (number > 0) {
-            list.subList(0, number).clear();
+            List<T> skipped = list.subList(0, number);
+            for(T item: skipped)
+                removed(item);
+            skipped.clear();
+            changed();
         }
     }
 
+    /**
+     * Skips the items before a position, if the queue still reaches it
+     *
+     * @param index the position of the item that becomes the first
+     * @return the item that is now first, or null if nothing was skipped
+     */
+    public synchronized T skipTo(int index)
+    {
+        if(index < 0 || index >= list.size())
+            return null;
+        skip(index);
+        return list.get(0);
+    }
+
     /**
      * Move an item to a different position in the list
      * @param from The position of the item
      * @param to The new position of the item
      * @return the moved item
      */
-    public T moveItem(int from, int to)
+    public synchronized T moveItem(int from, int to)
     {
         T item = list.remove(from);
         list.add(to, item);
+        changed();
         return item;
     }
+
+    /**
+     * Moves a range of items to a different position in the list, keeping
+     * their order
+     *
+     * @param from the first position to move
+     * @param to the position after the last one to move
+     * @param position where the first item goes, counted without the range
+     * @return the moved items, in order
+     */
+    public synchronized List<T> moveRange(int from, int to, int position)
+    {
+        List<T> range = list.subList(from, to);
+        List<T> moved = new ArrayList<>(range);
+        range.clear();
+        list.addAll(position, moved);
+        changed();
+        return moved;
+    }
+
+    /**
+     * Counts an item that was put into the list
+     *
+     * @return the number of items its identifier has now
+     */
+    protected int added(T item)
+    {
+        long identifier = item.getIdentifier();
+        long duration = item.getDuration();
+        long size = item.getEstimatedSize();
+        totalDuration += duration;
+        totalSize += size;
+        if(sharedSize != null)
+            sharedSize.addAndGet(size);
+        ownerDurations.add(identifier, duration);
+        ownerSizes.add(identifier, size);
+        if(keys != null)
+            index(item.getKey(), 1);
+        return (int) owners.add(identifier, 1);
+    }
+
+    /**
+     * Counts an item that was taken out of the list
+     */
+    protected void removed(T item)
+    {
+        long identifier = item.getIdentifier();
+        long duration = item.getDuration();
+        long size = item.getEstimatedSize();
+        totalDuration -= duration;
+        totalSize -= size;
+        if(sharedSize != null)
+            sharedSize.addAndGet(-size);
+        owners.add(identifier, -1);
+        ownerDurations.add(identifier, -duration);
+        ownerSizes.add(identifier, -size);
+        if(keys != null)
+            index(item.getKey(), -1);
+    }
+
+    private void index(String key, int delta)
+    {
+        if(key != null)
+            keys.merge(key, delta, (count, change) -> count + change == 0 ? null : count + change);
+    }
+
+    /**
+     * Called when two items trade places
+     */
+    protected void swapped(T first, T second) {}
+
+    /**
+     * Moves the queue to a new version; has to be called after every change
+     * to the list, while holding the lock
+     */
+    protected void changed()
+    {
+        version = VERSIONS.incrementAndGet();
+        snapshot = null;
+    }
 }
@@ -0,0 +1,525 @@
+/*
+ * Copyright 2022 John Grosh (jagrosh).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.queue;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.ToLongFunction;
+
+/**
+ * A list that stores its items in fixed-size arrays ("chunks"), with a Fenwick
+ * tree over the chunk sizes to find the chunk that holds an index. Getting,
+ * setting, inserting and removing at an index take O(log n) to find the chunk
+ * plus at most one chunk of copying, instead of the O(n) walk of a linked list
+ * or the O(n) shift of an array list.
+ *
+ * When created with a weigher, it also keeps the total weight of every chunk
+ * in a second Fenwick tree, so that the total weight of the items before any
+ * index, such as the time until a queued track plays, takes O(log n) plus at
+ * most one chunk of adding up. The weight of an item must not change while it
+ * is in the list.
+ *
+ * A {@link #snapshot()} shares the chunks instead of copying the items, so it
+ * takes time in the number of chunks. A chunk that a snapshot still shares is
+ * copied the first time the list changes it.
+ *
+ * @author John Grosh (jagrosh)
+ * @param <T>
+ */
+public class ChunkedList<T> extends AbstractList<T> implements RandomAccess
+{
+    public final static int CHUNK_SIZE = 128;
+
+    private Object[][] chunks = new Object[4][];
+    private boolean[] shared = new boolean[4];
+    private int[] sizes = new int[4];
+    private int[] tree = new int[5]; // Fenwick tree over sizes, 1-based
+    private int chunkCount = 0;
+    private int size = 0;
+    
+    private final ToLongFunction<? super T> weigher;
+    private long[] weights = new long[4];
+    private long[] weightTree = new long[5]; // Fenwick tree over weights, 1-based
+
+    public ChunkedList()
+    {
+        this((ToLongFunction<? super T>) null);
+    }
+
+    public ChunkedList(ToLongFunction<? super T> weigher)
+    {
+        this.weigher = weigher;
+    }
+
+    public ChunkedList(Collection<? extends T> items)
+    {
+        this((ToLongFunction<? super T>) null);
+        addAll(items);
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index)
+    {
+        checkIndex(index, size);
+        int chunk = findChunk(index);
+        return (T) chunks[chunk][index - offset(chunk)];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T set(int index, T item)
+    {
+        checkIndex(index, size);
+        int chunk = findChunk(index);
+        int local = index - offset(chunk);
+        T old = (T) chunks[chunk][local];
+        writable(chunk)[local] = item;
+        weigh(chunk, weight(item) - weight(old));
+        return old;
+    }
+
+    /**
+     * @param index the index to stop at
+     * @return the total weight of the items before the index, or 0 if this
+     *         list has no weigher
+     */
+    public long weightBefore(int index)
+    {
+        checkIndex(index, size + 1);
+        if(weigher == null || index == 0)
+            return 0;
+        int chunk = index == size ? chunkCount : findChunk(index);
+        long sum = 0;
+        for(int i=chunk; i>0; i -= i & -i)
+            sum += weightTree[i];
+        if(chunk < chunkCount)
+            sum += weightOf(chunks[chunk], 0, index - offset(chunk));
+        return sum;
+    }
+
+    @Override
+    public boolean add(T item)
+    {
+        if(chunkCount == 0 || sizes[chunkCount - 1] == CHUNK_SIZE)
+            insertChunk(chunkCount, new Object[CHUNK_SIZE], 0);
+        int chunk = chunkCount - 1;
+        writable(chunk)[sizes[chunk]] = item;
+        grow(chunk, 1);
+        weigh(chunk, weight(item));
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, T item)
+    {
+        checkIndex(index, size + 1);
+        if(index == size)
+        {
+            add(item);
+            return;
+        }
+        int chunk = findChunk(index);
+        int local = index - offset(chunk);
+        if(sizes[chunk] == CHUNK_SIZE)
+        {
+            // split the full chunk in half, and insert into whichever half holds the index
+            int half = CHUNK_SIZE / 2;
+            Object[] upper = new Object[CHUNK_SIZE];
+            System.arraycopy(chunks[chunk], half, upper, 0, CHUNK_SIZE - half);
+            Arrays.fill(writable(chunk), half, CHUNK_SIZE, null);
+            sizes[chunk] = half;
+            long upperWeight = weightOf(upper, 0, CHUNK_SIZE - half);
+            weights[chunk] -= upperWeight;
+            insertChunk(chunk + 1, upper, CHUNK_SIZE - half, upperWeight);
+            if(local > half)
+            {
+                chunk++;
+                local -= half;
+            }
+        }
+        Object[] items = writable(chunk);
+        System.arraycopy(items, local, items, local + 1, sizes[chunk] - local);
+        items[local] = item;
+        grow(chunk, 1);
+        weigh(chunk, weight(item));
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index)
+    {
+        checkIndex(index, size);
+        int chunk = findChunk(index);
+        return removeAt(chunk, index - offset(chunk));
+    }
+
+    @Override
+    public Iterator<T> iterator()
+    {
+        return new Itr();
+    }
+
+    /**
+     * @return an unmodifiable copy of the list as it is now, which shares
+     *         the chunks of this list until this list changes them
+     */
+    public List<T> snapshot()
+    {
+        Arrays.fill(shared, 0, chunkCount, true);
+        return new Snapshot<>(Arrays.copyOf(chunks, chunkCount), Arrays.copyOf(sizes, chunkCount), size);
+    }
+
+    /**
+     * @return the items of a chunk, copied first if a snapshot shares them
+     */
+    private Object[] writable(int chunk)
+    {
+        if(shared[chunk])
+        {
+            chunks[chunk] = chunks[chunk].clone();
+            shared[chunk] = false;
+        }
+        return chunks[chunk];
+    }
+
+    @SuppressWarnings("unchecked")
+    private T removeAt(int chunk, int local)
+    {
+        Object[] items = writable(chunk);
+        T old = (T) items[local];
+        System.arraycopy(items, local + 1, items, local, sizes[chunk] - local - 1);
+        items[sizes[chunk] - 1] = null;
+        if(sizes[chunk] == 1)
+            removeChunks(chunk, chunk + 1);
+        else
+        {
+            grow(chunk, -1);
+            weigh(chunk, -weight(old));
+        }
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear()
+    {
+        chunks = new Object[4][];
+        shared = new boolean[4];
+        sizes = new int[4];
+        tree = new int[5];
+        weights = new long[4];
+        weightTree = new long[5];
+        chunkCount = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex)
+    {
+        if(fromIndex >= toIndex)
+            return;
+        int first = findChunk(fromIndex);
+        int last = findChunk(toIndex - 1);
+        int firstOffset = offset(first);
+        int lastOffset = offset(last);
+        int from = fromIndex - firstOffset;
+        int to = toIndex - lastOffset;
+        if(first == last)
+        {
+            Object[] items = writable(first);
+            System.arraycopy(items, to, items, from, sizes[first] - to);
+            Arrays.fill(items, sizes[first] - (to - from), sizes[first], null);
+            sizes[first] -= to - from;
+            weights[first] = weightOf(items, 0, sizes[first]);
+        }
+        else
+        {
+            // the tail of the first chunk and the head of the last chunk are cut off,
+            // and every chunk in between is dropped
+            Arrays.fill(writable(first), from, sizes[first], null);
+            sizes[first] = from;
+            Object[] items = writable(last);
+            System.arraycopy(items, to, items, 0, sizes[last] - to);
+            Arrays.fill(items, sizes[last] - to, sizes[last], null);
+            sizes[last] -= to;
+            for(int i=first + 1; i<last; i++)
+                sizes[i] = 0;
+            weights[first] = weightOf(chunks[first], 0, sizes[first]);
+            weights[last] = weightOf(items, 0, sizes[last]);
+        }
+        size -= toIndex - fromIndex;
+        // drop the chunks that became empty
+        int write = 0;
+        for(int read=0; read<chunkCount; read++)
+        {
+            if(sizes[read] == 0)
+                continue;
+            chunks[write] = chunks[read];
+            shared[write] = shared[read];
+            sizes[write] = sizes[read];
+            weights[write] = weights[read];
+            write++;
+        }
+        for(int i=write; i<chunkCount; i++)
+        {
+            chunks[i] = null;
+            shared[i] = false;
+            sizes[i] = 0;
+            weights[i] = 0;
+        }
+        chunkCount = write;
+        rebuild();
+        modCount++;
+    }
+
+    /**
+     * Walks the chunks directly, instead of looking up every index
+     */
+    private class Itr implements Iterator<T>
+    {
+        private int chunk = 0;
+        private int local = 0;
+        private int remaining = size;
+        private boolean removable = false;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext()
+        {
+            return remaining > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next()
+        {
+            if(modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if(remaining == 0)
+                throw new NoSuchElementException();
+            while(local == sizes[chunk])
+            {
+                chunk++;
+                local = 0;
+            }
+            remaining--;
+            removable = true;
+            return (T) chunks[chunk][local++];
+        }
+
+        @Override
+        public void remove()
+        {
+            if(!removable)
+                throw new IllegalStateException();
+            if(modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            removable = false;
+            // removing the last item of a chunk drops the chunk, so the next one takes its place
+            boolean dropped = sizes[chunk] == 1;
+            removeAt(chunk, local - 1);
+            local = dropped ? 0 : local - 1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * The chunks of a list at one point in time. Every chunk is full except
+     * for the ones that were split or removed from, so an index is found with
+     * a binary search over where each chunk starts.
+     */
+    private static class Snapshot<T> extends AbstractList<T> implements RandomAccess
+    {
+        private final Object[][] chunks;
+        private final int[] starts;
+        private final int size;
+
+        private Snapshot(Object[][] chunks, int[] sizes, int size)
+        {
+            this.chunks = chunks;
+            this.starts = new int[sizes.length];
+            this.size = size;
+            for(int i=1; i<sizes.length; i++)
+                starts[i] = starts[i - 1] + sizes[i - 1];
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index)
+        {
+            checkIndex(index, size);
+            int chunk = Arrays.binarySearch(starts, index);
+            if(chunk < 0)
+                chunk = -chunk - 2;
+            return (T) chunks[chunk][index - starts[chunk]];
+        }
+    }
+
+    private static void checkIndex(int index, int bound)
+    {
+        if(index < 0 || index >= bound)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bound);
+    }
+
+    /**
+     * @return the chunk that holds the given index
+     */
+    private int findChunk(int index)
+    {
+        // descend the Fenwick tree to the last chunk whose prefix sum is at most index
+        int pos = 0;
+        for(int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1)
+        {
+            int next = pos + step;
+            if(next < tree.length && tree[next] <= index)
+            {
+                pos = next;
+                index -= tree[next];
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * @return the number of items before the given chunk
+     */
+    private int offset(int chunk)
+    {
+        int sum = 0;
+        for(int i=chunk; i>0; i -= i & -i)
+            sum += tree[i];
+        return sum;
+    }
+
+    private void grow(int chunk, int delta)
+    {
+        sizes[chunk] += delta;
+        size += delta;
+        for(int i=chunk + 1; i<tree.length; i += i & -i)
+            tree[i] += delta;
+    }
+
+    private void weigh(int chunk, long delta)
+    {
+        if(weigher == null)
+            return;
+        weights[chunk] += delta;
+        for(int i=chunk + 1; i<weightTree.length; i += i & -i)
+            weightTree[i] += delta;
+    }
+
+    private long weight(T item)
+    {
+        return weigher == null ? 0 : weigher.applyAsLong(item);
+    }
+
+    @SuppressWarnings("unchecked")
+    private long weightOf(Object[] items, int from, int to)
+    {
+        long sum = 0;
+        if(weigher != null)
+            for(int i=from; i<to; i++)
+                sum += weigher.applyAsLong((T) items[i]);
+        return sum;
+    }
+
+    private void insertChunk(int position, Object[] items, int count)
+    {
+        insertChunk(position, items, count, 0);
+    }
+
+    private void insertChunk(int position, Object[] items, int count, long weight)
+    {
+        if(chunkCount == chunks.length)
+        {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            shared = Arrays.copyOf(shared, chunkCount * 2);
+            sizes = Arrays.copyOf(sizes, chunkCount * 2);
+            weights = Arrays.copyOf(weights, chunkCount * 2);
+            tree = new int[chunkCount * 2 + 1];
+            weightTree = new long[chunkCount * 2 + 1];
+        }
+        System.arraycopy(chunks, position, chunks, position + 1, chunkCount - position);
+        System.arraycopy(shared, position, shared, position + 1, chunkCount - position);
+        System.arraycopy(sizes, position, sizes, position + 1, chunkCount - position);
+        System.arraycopy(weights, position, weights, position + 1, chunkCount - position);
+        chunks[position] = items;
+        shared[position] = false;
+        sizes[position] = count;
+        weights[position] = weight;
+        chunkCount++;
+        rebuild();
+    }
+
+    private void removeChunks(int from, int to)
+    {
+        int removed = 0;
+        for(int i=from; i<to; i++)
+            removed += sizes[i];
+        System.arraycopy(chunks, to, chunks, from, chunkCount - to);
+        System.arraycopy(shared, to, shared, from, chunkCount - to);
+        System.arraycopy(sizes, to, sizes, from, chunkCount - to);
+        System.arraycopy(weights, to, weights, from, chunkCount - to);
+        for(int i=chunkCount - (to - from); i<chunkCount; i++)
+        {
+            chunks[i] = null;
+            shared[i] = false;
+            sizes[i] = 0;
+            weights[i] = 0;
+        }
+        chunkCount -= to - from;
+        size -= removed;
+        rebuild();
+    }
+
+    private void rebuild()
+    {
+        Arrays.fill(tree, 0);
+        Arrays.fill(weightTree, 0);
+        for(int i=1; i<tree.length; i++)
+        {
+            tree[i] += sizes[i - 1];
+            weightTree[i] += weights[i - 1];
+            int parent = i + (i & -i);
+            if(parent < tree.length)
+            {
+                tree[parent] += tree[i];
+                weightTree[parent] += weightTree[i];
+            }
+        }
+    }
+}
@@ -15,10 +15,27 @@
  */
 package com.jagrosh.jmusicbot.queue;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
+ * A queue that alternates between the users who added tracks. An added track
+ * goes after the user's last track, past one track of every other user.
+ * 
+ * The queue is split into "rounds", where a new round starts whenever a user
+ * repeats, so each round holds at most one track of each user. The round of
+ * every user's last track is kept, so adding only has to search that round,
+ * and an added track always ends up in the round after it. Rounds are
+ * numbered from the start of the queue and keep their numbers while tracks
+ * are played, so playing a track only shrinks the first round, or drops it
+ * once it is empty. Adding, playing, shuffling and clearing keep the rounds
+ * up to date; any other change has the queue split into rounds again on the
+ * next add.
  *
  * @author John Grosh (jagrosh)
  * @param <T>
@@ -30,15 +47,74 @@ public class FairQueue<T extends Queueable> extends AbstractQueue<T>
         super(queue);
     }
 
+    public FairQueue(AbstractQueue<T> queue, QueueStore store)
+    {
+        super(queue, store);
+    }
+
     protected final Set<Long> set = new HashSet<>();
+    
+    private boolean known = false;
+    // the round of the last track of each user
+    private final LongLongMap lastRounds = new LongLongMap();
+    // the number of the first round, and of the round before the first slot of roundSizes
+    private long base = 1;
+    private long offset = 0;
+    private int[] roundSizes = new int[8];
+    private int[] rounds = new int[9]; // Fenwick tree over roundSizes, 1-based
 
     @Override
-    public int add(T item)
+    public synchronized int add(T item)
     {
-        int lastIndex;
-        for(lastIndex=list.size()-1; lastIndex>-1; lastIndex--)
-            if(list.get(lastIndex).getIdentifier() == item.getIdentifier())
-                break;
+        if(!known)
+            splitRounds();
+        int index = insertAfter(item, lastIndexOf(item.getIdentifier()));
+        changed();
+        return index;
+    }
+
+    @Override
+    public synchronized void addAll(Collection<? extends T> items)
+    {
+        if(!known)
+            splitRounds();
+        T previous = null;
+        int lastIndex = -1;
+        for(T item: items)
+        {
+            // a track from the same user as the one before it goes after that one,
+            // so the user's last track only has to be found at the start of a run
+            if(previous == null || previous.getIdentifier() != item.getIdentifier())
+                lastIndex = lastIndexOf(item.getIdentifier());
+            lastIndex = insertAfter(item, lastIndex);
+            previous = item;
+        }
+        if(previous != null)
+            changed();
+    }
+    
+    private int lastIndexOf(long identifier)
+    {
+        long round = lastRounds.get(identifier, 0);
+        if(round == 0)
+            return -1;
+        int end = roundEnd(round);
+        for(int index=roundEnd(round - 1); index<end; index++)
+            if(list.get(index).getIdentifier() == identifier)
+                return index;
+        throw new IllegalStateException("The last track of a user is not in its round");
+    }
+    
+    /**
+     * Inserts an item after the last item of its user, past one item of every other user
+     *
+     * @return the index the item was inserted at
+     */
+    private int insertAfter(T item, int lastIndex)
+    {
+        long identifier = item.getIdentifier();
+        long round = lastRounds.get(identifier, 0);
+        boolean empty = list.isEmpty();
         lastIndex++;
         set.clear();
         for(; lastIndex<list.size(); lastIndex++)
@@ -48,7 +124,207 @@ public class FairQueue<T extends Queueable> extends AbstractQueue<T>
             set.add(list.get(lastIndex).getIdentifier());
         }
         list.add(lastIndex, item);
+        added(item);
+        
+        // the search stops within the round after the user's last track, since
+        // that round starts with a user of the round before it; a user without
+        // tracks joins the round it lands in, or the one it ends
+        if(round != 0)
+            round++;
+        else
+            round = empty ? base : roundAt(lastIndex);
+        lastRounds.put(identifier, round);
+        resizeRound(round, 1);
         return lastIndex;
     }
 
+    @Override
+    public synchronized void addAt(int index, T item)
+    {
+        super.addAt(index, item);
+        known = false;
+    }
+
+    @Override
+    public synchronized T pull()
+    {
+        if(known && !list.isEmpty())
+            dropFirst(list.get(0));
+        return super.pull();
+    }
+
+    @Override
+    public synchronized T remove(int index)
+    {
+        if(index == 0)
+            return pull();
+        known = false;
+        return super.remove(index);
+    }
+
+    @Override
+    public synchronized int removeAll(long identifier)
+    {
+        int count = super.removeAll(identifier);
+        if(count > 0)
+            known = false;
+        return count;
+    }
+
+    @Override
+    public synchronized List<T> removeRange(int from, int to)
+    {
+        known = false;
+        return super.removeRange(from, to);
+    }
+
+    @Override
+    public synchronized List<T> removeIf(Predicate<? super T> filter)
+    {
+        known = false;
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        super.clear();
+        resetRounds();
+    }
+
+    @Override
+    public synchronized void skip(int number)
+    {
+        if(known && number > 0)
+        {
+            Iterator<T> it = list.iterator();
+            for(int i=0; i<number; i++)
+                dropFirst(it.next());
+        }
+        super.skip(number);
+    }
+
+    @Override
+    public synchronized T moveItem(int from, int to)
+    {
+        known = false;
+        return super.moveItem(from, to);
+    }
+
+    @Override
+    public synchronized List<T> moveRange(int from, int to, int position)
+    {
+        known = false;
+        return super.moveRange(from, to, position);
+    }
+    
+    /**
+     * Splits the queue into rounds, starting a new round whenever a user repeats
+     */
+    private void splitRounds()
+    {
+        resetRounds();
+        set.clear();
+        long round = 1;
+        for(T item: list)
+        {
+            long identifier = item.getIdentifier();
+            if(!set.add(identifier))
+            {
+                round++;
+                set.clear();
+                set.add(identifier);
+            }
+            lastRounds.put(identifier, round);
+            resizeRound(round, 1);
+        }
+    }
+    
+    private void resetRounds()
+    {
+        lastRounds.clear();
+        base = 1;
+        offset = 0;
+        roundSizes = new int[8];
+        rounds = new int[9];
+        known = true;
+    }
+    
+    /**
+     * Takes the first item of the queue out of the first round, which is
+     * dropped once it is empty
+     */
+    private void dropFirst(T item)
+    {
+        long identifier = item.getIdentifier();
+        if(lastRounds.get(identifier, 0) == base)
+            lastRounds.remove(identifier);
+        resizeRound(base, -1);
+        if(roundSizes[(int) (base - offset - 1)] > 0)
+            return;
+        base++;
+        // once half of the slots are for dropped rounds, the rest are moved to the front
+        int dropped = (int) (base - offset - 1);
+        if(dropped * 2 >= roundSizes.length)
+        {
+            roundSizes = Arrays.copyOf(Arrays.copyOfRange(roundSizes, dropped, roundSizes.length), roundSizes.length);
+            offset += dropped;
+            rebuildRounds();
+        }
+    }
+    
+    /**
+     * @return the index just after the given round
+     */
+    private int roundEnd(long round)
+    {
+        int sum = 0;
+        for(int i=(int) (round - offset); i>0; i -= i & -i)
+            sum += rounds[i];
+        return sum;
+    }
+    
+    /**
+     * @param index a position after the start of the queue
+     * @return the first round that ends at or after the position
+     */
+    private long roundAt(int index)
+    {
+        int slot = 0;
+        int sum = 0;
+        for(int step=Integer.highestOneBit(roundSizes.length); step>0; step >>= 1)
+        {
+            if(slot + step < rounds.length && sum + rounds[slot + step] < index)
+            {
+                slot += step;
+                sum += rounds[slot];
+            }
+        }
+        return offset + slot + 1;
+    }
+    
+    private void resizeRound(long round, int delta)
+    {
+        int slot = (int) (round - offset);
+        if(slot > roundSizes.length)
+        {
+            roundSizes = Arrays.copyOf(roundSizes, Integer.highestOneBit(slot) * 2);
+            rebuildRounds();
+        }
+        roundSizes[slot - 1] += delta;
+        for(int i=slot; i<rounds.length; i += i & -i)
+            rounds[i] += delta;
+    }
+    
+    private void rebuildRounds()
+    {
+        rounds = new int[roundSizes.length + 1];
+        for(int i=1; i<rounds.length; i++)
+        {
+            rounds[i] += roundSizes[i - 1];
+            int parent = i + (i & -i);
+            if(parent < rounds.length)
+                rounds[parent] += rounds[i];
+        }
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2022 John Grosh (jagrosh).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.queue;
+
+import java.util.Arrays;
+
+/**
+ * A map from objects, compared by identity, to long values, without boxing
+ * the values. It keeps a value per queued item, for items that may be equal
+ * to each other without being the same entry. An IdentityHashMap would box
+ * a Long for every item, and again every time the value of an item changes,
+ * which happens to many items at once whenever the queue is reordered.
+ *
+ * @author John Grosh (jagrosh)
+ * @param <K> the type of the keys
+ */
+class IdentityLongMap<K>
+{
+    private Object[] keys = new Object[16];
+    private long[] values = new long[16];
+    private int size = 0;
+
+    /**
+     * @return the value of the key, or 0 if it has none
+     */
+    public long get(K key)
+    {
+        int slot = find(key);
+        return slot < 0 ? 0 : values[slot];
+    }
+
+    public boolean containsKey(K key)
+    {
+        return find(key) >= 0;
+    }
+
+    public void put(K key, long value)
+    {
+        int slot = find(key);
+        if(slot >= 0)
+        {
+            values[slot] = value;
+            return;
+        }
+        if((size + 1) * 2 > keys.length)
+        {
+            resize(keys.length * 2);
+            slot = find(key);
+        }
+        slot = -slot - 1;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    public void remove(K key)
+    {
+        int slot = find(key);
+        if(slot < 0)
+            return;
+        // shift later entries of the same probe run back, so that lookups never stop early
+        int mask = keys.length - 1;
+        int hole = slot;
+        for(int next = (hole + 1) & mask; keys[next] != null; next = (next + 1) & mask)
+        {
+            int home = hash(keys[next]) & mask;
+            if(((next - home) & mask) >= ((next - hole) & mask))
+            {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        // the key is dropped, so that the map does not keep a removed item alive
+        keys[hole] = null;
+        size--;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    /**
+     * @return the slot of the key, or -(slot + 1) for the empty slot where it would go
+     */
+    private int find(Object key)
+    {
+        int mask = keys.length - 1;
+        for(int slot = hash(key) & mask; ; slot = (slot + 1) & mask)
+        {
+            if(keys[slot] == null)
+                return -slot - 1;
+            if(keys[slot] == key)
+                return slot;
+        }
+    }
+
+    private void resize(int capacity)
+    {
+        Object[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new Object[capacity];
+        values = new long[capacity];
+        for(int i=0; i<oldKeys.length; i++)
+        {
+            if(oldKeys[i] == null)
+                continue;
+            int slot = -find(oldKeys[i]) - 1;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int hash(Object key)
+    {
+        // identity hash codes are not spread out well enough for a power of two table on their own
+        int h = System.identityHashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
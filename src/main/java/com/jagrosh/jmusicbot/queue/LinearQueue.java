@@ -15,6 +15,8 @@
  */
 package com.jagrosh.jmusicbot.queue;
 
+import java.util.Collection;
+
 /**
  *
  * @author Wolfgang Schwendtbauer
@@ -27,11 +29,27 @@ public class LinearQueue<T extends Queueable> extends AbstractQueue<T>
         super(queue);
     }
 
+    public LinearQueue(AbstractQueue<T> queue, QueueStore store)
+    {
+        super(queue, store);
+    }
+
     @Override
-    public int add(T item)
+    public synchronized int add(T item)
     {
         list.add(item);
+        added(item);
+        changed();
         return list.size() - 1;
     }
 
+    @Override
+    public synchronized void addAll(Collection<? extends T> items)
+    {
+        list.addAll(items);
+        for(T item: items)
+            added(item);
+        changed();
+    }
+
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2022 John Grosh (jagrosh).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.queue;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A map from long keys to long values, without boxing either, for the
+ * counts and totals a queue keeps per user. It is only used while the
+ * queue's lock is held, so unlike {@link com.jagrosh.jmusicbot.utils.ConcurrentLongMap}
+ * it needs no atomic slots, and since entries come and go with every track
+ * queued or played, removing one shifts its neighbours back rather than
+ * leaving a marker that would pile up until the next rebuild.
+ *
+ * @author John Grosh (jagrosh)
+ */
+class LongLongMap
+{
+    private long[] keys = new long[16];
+    private long[] values = new long[16];
+    private boolean[] used = new boolean[16];
+    private int size = 0;
+
+    /**
+     * @return the value of the key, or the given default if it has none
+     */
+    public long get(long key, long absent)
+    {
+        int slot = find(key);
+        return slot < 0 ? absent : values[slot];
+    }
+
+    public void put(long key, long value)
+    {
+        int slot = find(key);
+        if(slot >= 0)
+        {
+            values[slot] = value;
+            return;
+        }
+        if((size + 1) * 2 > keys.length)
+        {
+            resize(keys.length * 2);
+            slot = find(key);
+        }
+        slot = -slot - 1;
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        size++;
+    }
+
+    /**
+     * Adds to the value of a key, as if a key without one had 0, and removes
+     * the key once its value is back to 0
+     *
+     * @param key the key
+     * @param delta the amount to add, may be negative
+     * @return the new value
+     */
+    public long add(long key, long delta)
+    {
+        long value = get(key, 0) + delta;
+        if(value == 0)
+            remove(key);
+        else
+            put(key, value);
+        return value;
+    }
+
+    public void remove(long key)
+    {
+        int slot = find(key);
+        if(slot < 0)
+            return;
+        // shift later entries of the same probe run back, so that lookups never stop early
+        int mask = keys.length - 1;
+        int hole = slot;
+        for(int next = (hole + 1) & mask; used[next]; next = (next + 1) & mask)
+        {
+            int home = hash(keys[next]) & mask;
+            if(((next - home) & mask) >= ((next - hole) & mask))
+            {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        used[hole] = false;
+        size--;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    public void forEachValue(LongConsumer consumer)
+    {
+        for(int slot=0; slot<keys.length; slot++)
+            if(used[slot])
+                consumer.accept(values[slot]);
+    }
+
+    /**
+     * @return the slot of the key, or -(slot + 1) for the empty slot where it would go
+     */
+    private int find(long key)
+    {
+        int mask = keys.length - 1;
+        for(int slot = hash(key) & mask; ; slot = (slot + 1) & mask)
+        {
+            if(!used[slot])
+                return -slot - 1;
+            if(keys[slot] == key)
+                return slot;
+        }
+    }
+
+    private void resize(int capacity)
+    {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        for(int i=0; i<oldKeys.length; i++)
+        {
+            if(!oldUsed[i])
+                continue;
+            int slot = -find(oldKeys[i]) - 1;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            used[slot] = true;
+        }
+    }
+
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
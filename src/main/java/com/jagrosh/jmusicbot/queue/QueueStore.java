@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 John Grosh (jagrosh).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.queue;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The list implementations a queue can keep its items in
+ *
+ * @author John Grosh (jagrosh)
+ */
+public enum QueueStore
+{
+    LINKED,     // O(n) indexed access, kept for comparison
+    CHUNKED;    // O(log n) indexed access, see ChunkedList
+
+    /**
+     * Creates a list of this kind. The items of a previous queue are always
+     * copied, even into a list of the same kind, since the previous queue may
+     * still be in use by a thread that got it before it was replaced.
+     *
+     * @param previous the list of the previous queue, or null
+     * @return a new list holding the items of the previous list
+     */
+    public <T extends Queueable> List<T> create(List<T> previous)
+    {
+        switch(this)
+        {
+            case CHUNKED:
+                // weighed by duration, for AbstractQueue#getDurationBefore
+                List<T> list = new ChunkedList<>(Queueable::getDuration);
+                if(previous != null)
+                    list.addAll(previous);
+                return list;
+            case LINKED:
+            default:
+                return previous == null ? new LinkedList<>() : new LinkedList<>(previous);
+        }
+    }
+}
@@ -22,5 +22,5 @@ package com.jagrosh.jmusicbot.queue;
 @FunctionalInterface
 public interface QueueSupplier
 {
-    <T extends Queueable> AbstractQueue<T> apply(AbstractQueue<T> queue);
+    <T extends Queueable> AbstractQueue<T> apply(AbstractQueue<T> queue, QueueStore store);
 }
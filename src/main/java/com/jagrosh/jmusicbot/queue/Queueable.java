@@ -22,4 +22,31 @@ package com.jagrosh.jmusicbot.queue;
 public interface Queueable {
     
     public long getIdentifier();
+    
+    /**
+     * @return the duration of the item in milliseconds, or 0 if it is not known
+     */
+    public default long getDuration()
+    {
+        return 0;
+    }
+    
+    /**
+     * @return roughly how many bytes of heap the item takes; has to stay the
+     *         same for as long as the item is queued
+     */
+    public default long getEstimatedSize()
+    {
+        return 0;
+    }
+    
+    /**
+     * @return what the item is a duplicate of another item by, or null if it
+     *         is never a duplicate; has to stay the same for as long as the
+     *         item is queued
+     */
+    public default String getKey()
+    {
+        return null;
+    }
 }
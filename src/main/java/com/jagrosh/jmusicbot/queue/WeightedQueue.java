@@ -0,0 +1,196 @@
+/*
+ * Copyright 2022 John Grosh (jagrosh).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.queue;
+
+import java.util.List;
+
+/**
+ * A queue that shares airtime between the users who added tracks, rather
+ * than alternating between them track by track like {@link FairQueue}. A user
+ * who queues ten-minute mixes gets one of them for every few songs of a user
+ * who queues three-minute songs.
+ *
+ * Every item is tagged with the virtual time it starts at: the end of its
+ * user's previous item, or the start of the item playing now if the user has
+ * nothing queued. A user's items are spaced by their durations, and the list
+ * is kept sorted by tag, so an added item is placed with a binary search and
+ * pulling one just takes the head. Items moved or inserted by hand take the
+ * tag of the item before them, which keeps the list sorted, and removing
+ * items never unsorts it.
+ *
+ * @author John Grosh (jagrosh)
+ * @param <T>
+ */
+public class WeightedQueue<T extends Queueable> extends AbstractQueue<T>
+{
+    // the weight of an item without a known duration, such as a stream
+    public final static long UNKNOWN_DURATION = 4 * 60 * 1000;
+
+    public WeightedQueue(AbstractQueue<T> queue)
+    {
+        super(queue);
+        tagAll();
+    }
+
+    public WeightedQueue(AbstractQueue<T> queue, QueueStore store)
+    {
+        super(queue, store);
+        tagAll();
+    }
+
+    // neither map boxes, since every add and pull looks up tags
+    private final IdentityLongMap<T> tags = new IdentityLongMap<>();
+    private final LongLongMap finishes = new LongLongMap();
+    private long virtualTime = 0;
+
+    @Override
+    public synchronized int add(T item)
+    {
+        long identifier = item.getIdentifier();
+        long start = virtualTime;
+        if(count(identifier) > 0)
+            start = Math.max(start, finishes.get(identifier, start));
+        finishes.put(identifier, start + weight(item));
+        int index = indexAfter(start);
+        list.add(index, item);
+        tags.put(item, start);
+        added(item);
+        changed();
+        return index;
+    }
+
+    @Override
+    public synchronized void addAt(int index, T item)
+    {
+        long tag = tagBefore(Math.min(index, list.size()));
+        super.addAt(index, item);
+        tags.put(item, tag);
+    }
+
+    @Override
+    public synchronized T pull()
+    {
+        virtualTime = Math.max(virtualTime, tags.get(list.get(0)));
+        return super.pull();
+    }
+
+    @Override
+    public synchronized void skip(int number)
+    {
+        if(number > 0)
+            virtualTime = Math.max(virtualTime, tags.get(list.get(number - 1)));
+        super.skip(number);
+    }
+
+    /**
+     * @param index a position in the queue
+     * @return the virtual time the item at the position starts at, which
+     *         never decreases from the front of the queue to its end
+     */
+    public synchronized long getTag(int index)
+    {
+        return tags.get(list.get(index));
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        super.clear();
+        tags.clear();
+        finishes.clear();
+    }
+
+    @Override
+    protected void swapped(T first, T second)
+    {
+        // the tags stay at their positions, so the list stays sorted
+        long tag = tags.get(first);
+        tags.put(first, tags.get(second));
+        tags.put(second, tag);
+    }
+
+    @Override
+    public synchronized T moveItem(int from, int to)
+    {
+        T item = super.moveItem(from, to);
+        tags.put(item, tagBefore(to));
+        return item;
+    }
+
+    @Override
+    public synchronized List<T> moveRange(int from, int to, int position)
+    {
+        List<T> moved = super.moveRange(from, to, position);
+        long tag = tagBefore(position);
+        for(T item: moved)
+            tags.put(item, tag);
+        return moved;
+    }
+
+    @Override
+    protected void removed(T item)
+    {
+        super.removed(item);
+        tags.remove(item);
+        if(count(item.getIdentifier()) == 0)
+            finishes.remove(item.getIdentifier());
+    }
+
+    /**
+     * Tags the items taken over from another queue in their current order
+     */
+    private void tagAll()
+    {
+        long tag = 0;
+        for(T item: list)
+        {
+            tag = Math.max(tag, finishes.get(item.getIdentifier(), 0));
+            tags.put(item, tag);
+            finishes.put(item.getIdentifier(), tag + weight(item));
+        }
+    }
+
+    /**
+     * @return the index just after the last item that starts no later than the given tag
+     */
+    private int indexAfter(long tag)
+    {
+        int low = 0, high = list.size();
+        while(low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if(tags.get(list.get(mid)) <= tag)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @return the tag for an item placed at the given index
+     */
+    private long tagBefore(int index)
+    {
+        return index == 0 ? virtualTime : tags.get(list.get(index - 1));
+    }
+
+    private static long weight(Queueable item)
+    {
+        long duration = item.getDuration();
+        return duration > 0 ? duration : UNKNOWN_DURATION;
+    }
+}
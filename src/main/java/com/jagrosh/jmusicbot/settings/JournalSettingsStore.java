@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.settings;
+
+import com.jagrosh.jmusicbot.utils.CheckpointJournal;
+import com.jagrosh.jmusicbot.utils.OtherUtil;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the settings of every guild in a {@link CheckpointJournal}, so that a
+ * change to one guild only appends that guild's settings rather than
+ * rewriting everyone's. Older records are dropped when the journal compacts.
+ *
+ * The first time the journal is opened, the settings in serversettings.json
+ * are imported into it. The JSON file is left as it is, so it is still there
+ * for older versions of the bot, but it is no longer kept up to date.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class JournalSettingsStore implements SettingsStore
+{
+    private final static Logger LOG = LoggerFactory.getLogger("Settings");
+    private final static byte GUILD = 1;
+
+    private final CheckpointJournal journal;
+    private final Path path, legacy;
+
+    public JournalSettingsStore(Path path, Path legacy)
+    {
+        this.journal = new CheckpointJournal(path);
+        this.path = path;
+        this.legacy = legacy;
+    }
+
+    @Override
+    public Map<Long, JSONObject> load() throws IOException
+    {
+        Map<Long, byte[][]> latest = journal.open();
+        // a journal without any records has never been written to, even if its file is there
+        if(latest.isEmpty() && Files.exists(legacy))
+        {
+            journal.close();
+            Map<Long, JSONObject> loaded = importLegacy();
+            journal.open();
+            LOG.info("Imported the settings of " + loaded.size() + " servers from " + legacy.toAbsolutePath());
+            return loaded;
+        }
+        Map<Long, JSONObject> loaded = new HashMap<>();
+        for(Map.Entry<Long, byte[][]> entry: latest.entrySet())
+        {
+            byte[] record = entry.getValue()[GUILD];
+            if(record == null)
+                continue;
+            try
+            {
+                loaded.put(entry.getKey(), new JSONObject(new String(record, 9, record.length - 9, StandardCharsets.UTF_8)));
+            }
+            catch(JSONException e)
+            {
+                LOG.warn("Failed to read the settings of " + entry.getKey() + ": " + e);
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public void write(Map<Long, JSONObject> changed, Supplier<Map<Long, JSONObject>> all) throws IOException
+    {
+        journal.append(records(changed));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        journal.close();
+    }
+
+    /**
+     * Writes the settings in serversettings.json to a journal of their own,
+     * which only replaces this journal once all of them are on disk. If the
+     * import fails or is cut short, this journal is left without records, and
+     * the import starts over the next time. Until then the journal stays
+     * closed, so that nothing written meanwhile can stop the import.
+     *
+     * @return the imported settings
+     * @throws IOException if the settings cannot be read or written
+     */
+    private Map<Long, JSONObject> importLegacy() throws IOException
+    {
+        Map<Long, JSONObject> loaded = new JsonSettingsStore(legacy).load();
+        Path temp = path.resolveSibling(path.getFileName() + ".import");
+        Files.deleteIfExists(temp);
+        CheckpointJournal imported = new CheckpointJournal(temp);
+        try
+        {
+            imported.open();
+            imported.append(records(loaded));
+        }
+        finally
+        {
+            imported.close();
+        }
+        OtherUtil.replaceFile(temp, path);
+        return loaded;
+    }
+
+    private static List<byte[]> records(Map<Long, JSONObject> settings)
+    {
+        List<byte[]> records = new ArrayList<>(settings.size());
+        for(Map.Entry<Long, JSONObject> entry: settings.entrySet())
+        {
+            byte[] json = entry.getValue().toString().getBytes(StandardCharsets.UTF_8);
+            records.add(ByteBuffer.allocate(9 + json.length).put(GUILD).putLong(entry.getKey()).put(json).array());
+        }
+        return records;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.settings;
+
+import com.jagrosh.jmusicbot.utils.OtherUtil;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the settings of every guild in one JSON file, which is rewritten in
+ * full whenever any of them change. The file is written to a temporary file
+ * first and then moved over the old one, so a crash during a write never
+ * leaves it half written, on any file system that can replace a file
+ * atomically.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class JsonSettingsStore implements SettingsStore
+{
+    private final static Logger LOG = LoggerFactory.getLogger("Settings");
+    private final Path path;
+
+    public JsonSettingsStore(Path path)
+    {
+        this.path = path;
+    }
+
+    @Override
+    public Map<Long, JSONObject> load() throws IOException
+    {
+        Map<Long, JSONObject> loaded = new HashMap<>();
+        try
+        {
+            JSONObject obj = new JSONObject(new String(Files.readAllBytes(path)));
+            obj.keySet().forEach(id -> loaded.put(Long.parseLong(id), obj.getJSONObject(id)));
+        }
+        catch(NoSuchFileException e)
+        {
+            // nothing has been saved yet, so an empty file is made to be filled in
+            try
+            {
+                LOG.info(path.getFileName() + " will be created in " + path.toAbsolutePath());
+                Files.write(path, new JSONObject().toString(4).getBytes());
+            }
+            catch(IOException ex)
+            {
+                LOG.warn("Failed to create new settings file: " + ex);
+            }
+        }
+        catch(JSONException | NumberFormatException e)
+        {
+            throw new IOException("Failed to parse " + path.getFileName(), e);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void write(Map<Long, JSONObject> changed, Supplier<Map<Long, JSONObject>> all) throws IOException
+    {
+        JSONObject obj = new JSONObject();
+        all.get().forEach((id, o) -> obj.put(Long.toString(id), o));
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, obj.toString(4).getBytes());
+        OtherUtil.replaceFile(temp, path);
+    }
+
+    @Override
+    public void close() {}
+}
@@ -19,7 +19,9 @@ import com.jagrosh.jmusicbot.queue.AbstractQueue;
 import com.jagrosh.jmusicbot.queue.FairQueue;
 import com.jagrosh.jmusicbot.queue.LinearQueue;
 import com.jagrosh.jmusicbot.queue.Queueable;
+import com.jagrosh.jmusicbot.queue.QueueStore;
 import com.jagrosh.jmusicbot.queue.QueueSupplier;
+import com.jagrosh.jmusicbot.queue.WeightedQueue;
 
 import java.util.Arrays;
 import java.util.List;
@@ -31,18 +33,21 @@ import java.util.stream.Collectors;
  */
 public enum QueueType
 {
-    LINEAR("\u23E9", "Linear", LinearQueue::new),     // ⏩
-    FAIR("\uD83D\uDD22", "Fair", FairQueue::new);     // 🔢
+    LINEAR("\u23E9", "Linear", LinearQueue::new, QueueStore.CHUNKED),     // ⏩
+    FAIR("\uD83D\uDD22", "Fair", FairQueue::new, QueueStore.CHUNKED),     // 🔢
+    WEIGHTED("\u2696", "Weighted", WeightedQueue::new, QueueStore.CHUNKED); // ⚖
 
     private final String userFriendlyName;
     private final String emoji;
     private final QueueSupplier supplier;
+    private final QueueStore store;
 
-    QueueType(final String emoji, final String userFriendlyName, QueueSupplier supplier)
+    QueueType(final String emoji, final String userFriendlyName, QueueSupplier supplier, QueueStore store)
     {
         this.userFriendlyName = userFriendlyName;
         this.emoji = emoji;
         this.supplier = supplier;
+        this.store = store;
     }
 
     public static List<String> getNames()
@@ -54,7 +59,7 @@ public enum QueueType
 
     public <T extends Queueable> AbstractQueue<T> createInstance(AbstractQueue<T> previous)
     {
-        return supplier.apply(previous);
+        return supplier.apply(previous, store);
     }
 
     public String getUserFriendlyName()
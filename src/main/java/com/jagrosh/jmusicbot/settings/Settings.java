@@ -18,181 +18,237 @@ package com.jagrosh.jmusicbot.settings;
 import com.jagrosh.jdautilities.command.GuildSettingsProvider;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.function.Consumer;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.entities.VoiceChannel;
 
 /**
+ * The settings of a guild. They are read on every message from any of JDA's
+ * threads, so they are kept in an immutable snapshot that a change replaces
+ * as a whole: readers never lock, and always see either the old or the new
+ * settings in full.
+ *
+ * A guild that has never changed its settings has no settings of its own.
+ * It is handed the defaults that every such guild shares, which cannot be
+ * changed; {@link SettingsManager#editSettings} gives the guild settings of
+ * its own to change.
  *
  * @author John Grosh <john.a.grosh@gmail.com>
  */
 public class Settings implements GuildSettingsProvider
 {
+    final static Values DEFAULTS = new Values(0, 0, 0, 100, null, RepeatMode.OFF, null, -1, QueueType.FAIR, false);
+
     private final SettingsManager manager;
-    protected long textId;
-    protected long voiceId;
-    protected long roleId;
-    private int volume;
-    private String defaultPlaylist;
-    private RepeatMode repeatMode;
-    private QueueType queueType;
-    private String prefix;
-    private double skipRatio;
-
-    public Settings(SettingsManager manager, String textId, String voiceId, String roleId, int volume, String defaultPlaylist, RepeatMode repeatMode, String prefix, double skipRatio, QueueType queueType)
+    // 0 for the defaults shared by every guild without settings of its own
+    private final long guildId;
+    private volatile Values values;
+
+    public Settings(SettingsManager manager, long guildId, String textId, String voiceId, String roleId, int volume, String defaultPlaylist, RepeatMode repeatMode, String prefix, double skipRatio, QueueType queueType, boolean dedup)
     {
-        this.manager = manager;
-        try
-        {
-            this.textId = Long.parseLong(textId);
-        }
-        catch(NumberFormatException e)
-        {
-            this.textId = 0;
-        }
-        try
-        {
-            this.voiceId = Long.parseLong(voiceId);
-        }
-        catch(NumberFormatException e)
-        {
-            this.voiceId = 0;
-        }
-        try
-        {
-            this.roleId = Long.parseLong(roleId);
-        }
-        catch(NumberFormatException e)
-        {
-            this.roleId = 0;
-        }
-        this.volume = volume;
-        this.defaultPlaylist = defaultPlaylist;
-        this.repeatMode = repeatMode;
-        this.prefix = prefix;
-        this.skipRatio = skipRatio;
-        this.queueType = queueType;
+        this(manager, guildId, parseId(textId), parseId(voiceId), parseId(roleId), volume, defaultPlaylist, repeatMode, prefix, skipRatio, queueType, dedup);
     }
     
-    public Settings(SettingsManager manager, long textId, long voiceId, long roleId, int volume, String defaultPlaylist, RepeatMode repeatMode, String prefix, double skipRatio, QueueType queueType)
+    public Settings(SettingsManager manager, long guildId, long textId, long voiceId, long roleId, int volume, String defaultPlaylist, RepeatMode repeatMode, String prefix, double skipRatio, QueueType queueType, boolean dedup)
+    {
+        this(manager, guildId, new Values(textId, voiceId, roleId, volume, defaultPlaylist, repeatMode, prefix, skipRatio, queueType, dedup));
+    }
+
+    Settings(SettingsManager manager, long guildId, Values values)
     {
         this.manager = manager;
-        this.textId = textId;
-        this.voiceId = voiceId;
-        this.roleId = roleId;
-        this.volume = volume;
-        this.defaultPlaylist = defaultPlaylist;
-        this.repeatMode = repeatMode;
-        this.prefix = prefix;
-        this.skipRatio = skipRatio;
-        this.queueType = queueType;
+        this.guildId = guildId;
+        this.values = values;
     }
     
     // Getters
     public TextChannel getTextChannel(Guild guild)
     {
-        return guild == null ? null : guild.getTextChannelById(textId);
+        return guild == null ? null : guild.getTextChannelById(values.textId);
     }
     
     public VoiceChannel getVoiceChannel(Guild guild)
     {
-        return guild == null ? null : guild.getVoiceChannelById(voiceId);
+        return guild == null ? null : guild.getVoiceChannelById(values.voiceId);
     }
     
     public Role getRole(Guild guild)
     {
-        return guild == null ? null : guild.getRoleById(roleId);
+        return guild == null ? null : guild.getRoleById(values.roleId);
     }
     
     public int getVolume()
     {
-        return volume;
+        return values.volume;
     }
     
     public String getDefaultPlaylist()
     {
-        return defaultPlaylist;
+        return values.defaultPlaylist;
     }
     
     public RepeatMode getRepeatMode()
     {
-        return repeatMode;
+        return values.repeatMode;
     }
     
     public String getPrefix()
     {
-        return prefix;
+        return values.prefix;
     }
     
     public double getSkipRatio()
     {
-        return skipRatio;
+        return values.skipRatio;
     }
 
     public QueueType getQueueType()
     {
-        return queueType;
+        return values.queueType;
+    }
+
+    public boolean isDedup()
+    {
+        return values.dedup;
     }
 
     @Override
     public Collection<String> getPrefixes()
     {
+        String prefix = values.prefix;
         return prefix == null ? Collections.emptySet() : Collections.singleton(prefix);
     }
+
+    /**
+     * @return every setting as of now, which later changes do not affect
+     */
+    Values snapshot()
+    {
+        return values;
+    }
     
     // Setters
     public void setTextChannel(TextChannel tc)
     {
-        this.textId = tc == null ? 0 : tc.getIdLong();
-        this.manager.writeSettings();
+        update(v -> v.textId = tc == null ? 0 : tc.getIdLong());
     }
     
     public void setVoiceChannel(VoiceChannel vc)
     {
-        this.voiceId = vc == null ? 0 : vc.getIdLong();
-        this.manager.writeSettings();
+        update(v -> v.voiceId = vc == null ? 0 : vc.getIdLong());
     }
     
     public void setDJRole(Role role)
     {
-        this.roleId = role == null ? 0 : role.getIdLong();
-        this.manager.writeSettings();
+        update(v -> v.roleId = role == null ? 0 : role.getIdLong());
     }
     
     public void setVolume(int volume)
     {
-        this.volume = volume;
-        this.manager.writeSettings();
+        update(v -> v.volume = volume);
     }
     
     public void setDefaultPlaylist(String defaultPlaylist)
     {
-        this.defaultPlaylist = defaultPlaylist;
-        this.manager.writeSettings();
+        update(v -> v.defaultPlaylist = defaultPlaylist);
     }
     
     public void setRepeatMode(RepeatMode mode)
     {
-        this.repeatMode = mode;
-        this.manager.writeSettings();
+        update(v -> v.repeatMode = mode);
     }
     
     public void setPrefix(String prefix)
     {
-        this.prefix = prefix;
-        this.manager.writeSettings();
+        update(v -> v.prefix = prefix);
     }
 
     public void setSkipRatio(double skipRatio)
     {
-        this.skipRatio = skipRatio;
-        this.manager.writeSettings();
+        update(v -> v.skipRatio = skipRatio);
     }
 
     public void setQueueType(QueueType queueType)
     {
-        this.queueType = queueType;
-        this.manager.writeSettings();
+        update(v -> v.queueType = queueType);
+    }
+
+    public void setDedup(boolean dedup)
+    {
+        update(v -> v.dedup = dedup);
+    }
+
+    /**
+     * Applies a change to a copy of the settings, and then swaps the copy in
+     */
+    private void update(Consumer<Values> change)
+    {
+        if(guildId == 0)
+            throw new UnsupportedOperationException("The default settings are shared by every guild, and are changed through SettingsManager.editSettings");
+        synchronized(this)
+        {
+            Values next = new Values(values);
+            change.accept(next);
+            values = next;
+        }
+        manager.writeSettings(guildId);
+    }
+
+    private static long parseId(String id)
+    {
+        try
+        {
+            return Long.parseLong(id);
+        }
+        catch(NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * A snapshot of the settings. It is only changed before it is published,
+     * and never again after.
+     */
+    static class Values
+    {
+        long textId, voiceId, roleId;
+        int volume;
+        String defaultPlaylist;
+        RepeatMode repeatMode;
+        String prefix;
+        double skipRatio;
+        QueueType queueType;
+        boolean dedup;
+
+        private Values(long textId, long voiceId, long roleId, int volume, String defaultPlaylist, RepeatMode repeatMode, String prefix, double skipRatio, QueueType queueType, boolean dedup)
+        {
+            this.textId = textId;
+            this.voiceId = voiceId;
+            this.roleId = roleId;
+            this.volume = volume;
+            this.defaultPlaylist = defaultPlaylist;
+            this.repeatMode = repeatMode;
+            this.prefix = prefix;
+            this.skipRatio = skipRatio;
+            this.queueType = queueType;
+            this.dedup = dedup;
+        }
+
+        private Values(Values other)
+        {
+            textId = other.textId;
+            voiceId = other.voiceId;
+            roleId = other.roleId;
+            volume = other.volume;
+            defaultPlaylist = other.defaultPlaylist;
+            repeatMode = other.repeatMode;
+            prefix = other.prefix;
+            skipRatio = other.skipRatio;
+            queueType = other.queueType;
+            dedup = other.dedup;
+        }
     }
 }
@@ -16,11 +16,17 @@
 package com.jagrosh.jmusicbot.settings;
 
 import com.jagrosh.jdautilities.command.GuildSettingsManager;
-import com.jagrosh.jmusicbot.utils.OtherUtil;
+import com.jagrosh.jmusicbot.utils.ConcurrentLongMap;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import net.dv8tion.jda.api.entities.Guild;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -28,61 +34,60 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Changes to settings are not written right away. A change marks the guild
+ * as dirty and schedules a write a few seconds later, so that a burst of
+ * changes across any number of guilds ends up as a single write. Only the
+ * guilds that changed are handed to the {@link SettingsStore}, so a store
+ * that can write them on their own never has to write everyone's.
  *
  * @author John Grosh (john.a.grosh@gmail.com)
  */
 public class SettingsManager implements GuildSettingsManager<Settings>
 {
     private final static Logger LOG = LoggerFactory.getLogger("Settings");
-    private final static String SETTINGS_FILE = "serversettings.json";
-    private final HashMap<Long,Settings> settings;
+    private final static long WRITE_DELAY = 5; // seconds
+    // an estimate, not a measurement, of what the settings of one guild take on a 64-bit JVM with
+    // compressed pointers: 32 bytes of Settings, 72 of its Values, and about 24 for its slot in the
+    // map, leaving out a prefix or a default playlist
+    public final static int ESTIMATED_SIZE = 128; // bytes
+    private final ConcurrentLongMap<Settings> settings;
+    // what every guild without settings of its own is handed, so that looking them up allocates nothing
+    private final Settings defaults = new Settings(this, 0, Settings.DEFAULTS);
+    private final SettingsStore store;
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Object writeLock = new Object();
+    private ScheduledExecutorService writer;
 
-    public SettingsManager()
+    public SettingsManager(SettingsStore store)
     {
-        this.settings = new HashMap<>();
+        this.settings = new ConcurrentLongMap<>();
+        this.store = store;
 
         try {
-            JSONObject loadedSettings = new JSONObject(new String(Files.readAllBytes(OtherUtil.getPath(SETTINGS_FILE))));
-            loadedSettings.keySet().forEach((id) -> {
-                JSONObject o = loadedSettings.getJSONObject(id);
-
-                // Legacy version support: On versions 0.3.3 and older, the repeat mode was represented as a boolean.
-                if (!o.has("repeat_mode") && o.has("repeat") && o.getBoolean("repeat"))
-                    o.put("repeat_mode", RepeatMode.ALL);
-
-
-                settings.put(Long.parseLong(id), new Settings(this,
-                        o.has("text_channel_id") ? o.getString("text_channel_id")            : null,
-                        o.has("voice_channel_id")? o.getString("voice_channel_id")           : null,
-                        o.has("dj_role_id")      ? o.getString("dj_role_id")                 : null,
-                        o.has("volume")          ? o.getInt("volume")                        : 100,
-                        o.has("default_playlist")? o.getString("default_playlist")           : null,
-                        o.has("repeat_mode")     ? o.getEnum(RepeatMode.class, "repeat_mode"): RepeatMode.OFF,
-                        o.has("prefix")          ? o.getString("prefix")                     : null,
-                        o.has("skip_ratio")      ? o.getDouble("skip_ratio")                 : -1,
-                        o.has("queue_type")      ? o.getEnum(QueueType.class, "queue_type")  : QueueType.FAIR));
+            store.load().forEach((id, o) -> {
+                // guilds whose settings went back to the defaults do not need any of their own
+                if(o.length() == 0)
+                    return;
+                try {
+                    settings.put(id, fromJson(id, o));
+                } catch(JSONException e) {
+                    LOG.warn("Failed to load the settings of "+id+": "+e);
+                }
             });
-        } catch (NoSuchFileException e) {
-            // create an empty json file
-            try {
-                LOG.info("serversettings.json will be created in " + OtherUtil.getPath("serversettings.json").toAbsolutePath());
-                Files.write(OtherUtil.getPath("serversettings.json"), new JSONObject().toString(4).getBytes());
-            } catch(IOException ex) {
-                LOG.warn("Failed to create new settings file: "+ex);
-            }
-            return;
-        } catch(IOException | JSONException e) {
+        } catch(IOException e) {
             LOG.warn("Failed to load server settings: "+e);
         }
 
-        LOG.info("serversettings.json loaded from " + OtherUtil.getPath("serversettings.json").toAbsolutePath());
+        LOG.info("Loaded the settings of "+settings.size()+" servers");
     }
 
     /**
      * Gets non-null settings for a Guild
      *
      * @param guild the guild to get settings for
-     * @return the existing settings, or new settings for that guild
+     * @return the guild's own settings, or the defaults shared by every guild
+     *         without any
      */
     @Override
     public Settings getSettings(Guild guild)
@@ -90,46 +95,179 @@ public class SettingsManager implements GuildSettingsManager<Settings>
         return getSettings(guild.getIdLong());
     }
 
+    /**
+     * @param guildId the guild
+     * @return the guild's own settings, or the defaults shared by every guild
+     *         without any, which cannot be changed; see {@link #editSettings}
+     */
     public Settings getSettings(long guildId)
     {
-        return settings.computeIfAbsent(guildId, id -> createDefaultSettings());
+        Settings s = settings.get(guildId);
+        return s != null ? s : defaults;
     }
 
-    private Settings createDefaultSettings()
+    /**
+     * @return the number of guilds that have settings of their own
+     */
+    public int getStoredCount()
     {
-        return new Settings(this, 0, 0, 0, 100, null, RepeatMode.OFF, null, -1, QueueType.FAIR);
+        return settings.size();
     }
 
-    protected void writeSettings()
+    /**
+     * Gets settings of the guild's own to change, which start out as the
+     * defaults if the guild has never changed any
+     *
+     * @param guild the guild to change the settings of
+     * @return the guild's own settings
+     */
+    public Settings editSettings(Guild guild)
+    {
+        return editSettings(guild.getIdLong());
+    }
+
+    public Settings editSettings(long guildId)
+    {
+        Settings own = settings.get(guildId);
+        if(own != null)
+            return own;
+        // whichever thread gets here first makes them, and every other thread changes those
+        Settings made = new Settings(this, guildId, Settings.DEFAULTS);
+        own = settings.putIfAbsent(guildId, made);
+        return own == null ? made : own;
+    }
+
+    /**
+     * Starts writing changes in the background; until then, every change is
+     * written right away
+     *
+     * @param writer the executor to write with
+     */
+    public synchronized void init(ScheduledExecutorService writer)
+    {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes any changes that have not been written yet, and closes the store
+     */
+    public void shutdown()
     {
-        JSONObject obj = new JSONObject();
-        settings.keySet().stream().forEach(key -> {
-            JSONObject o = new JSONObject();
-            Settings s = settings.get(key);
-            if(s.textId!=0)
-                o.put("text_channel_id", Long.toString(s.textId));
-            if(s.voiceId!=0)
-                o.put("voice_channel_id", Long.toString(s.voiceId));
-            if(s.roleId!=0)
-                o.put("dj_role_id", Long.toString(s.roleId));
-            if(s.getVolume()!=100)
-                o.put("volume",s.getVolume());
-            if(s.getDefaultPlaylist() != null)
-                o.put("default_playlist", s.getDefaultPlaylist());
-            if(s.getRepeatMode()!=RepeatMode.OFF)
-                o.put("repeat_mode", s.getRepeatMode());
-            if(s.getPrefix() != null)
-                o.put("prefix", s.getPrefix());
-            if(s.getSkipRatio() != -1)
-                o.put("skip_ratio", s.getSkipRatio());
-            if(s.getQueueType() != QueueType.FAIR)
-                o.put("queue_type", s.getQueueType().name());
-            obj.put(Long.toString(key), o);
-        });
+        synchronized(this)
+        {
+            writer = null;
+        }
+        flush();
         try {
-            Files.write(OtherUtil.getPath(SETTINGS_FILE), obj.toString(4).getBytes());
-        } catch(IOException ex){
-            LOG.warn("Failed to write to file: "+ex);
+            store.close();
+        } catch(IOException ex) {
+            LOG.warn("Failed to close the settings store: "+ex);
         }
     }
+
+    /**
+     * Marks the settings of a guild as changed, and schedules a write if one
+     * is not already coming up
+     *
+     * @param guildId the guild
+     */
+    protected void writeSettings(long guildId)
+    {
+        dirty.add(guildId);
+        if(scheduled.getAndSet(true))
+            return;
+        synchronized(this)
+        {
+            if(writer != null)
+            {
+                try {
+                    writer.schedule(() -> flush(), WRITE_DELAY, TimeUnit.SECONDS);
+                    return;
+                } catch(RejectedExecutionException ex) {
+                    // the writer is shutting down, so the change is written right away instead
+                }
+            }
+        }
+        flush();
+    }
+
+    private void flush()
+    {
+        synchronized(writeLock)
+        {
+            // a change made from here on schedules another write
+            scheduled.set(false);
+            Map<Long,JSONObject> changed = new HashMap<>();
+            for(Iterator<Long> it = dirty.iterator(); it.hasNext(); )
+            {
+                long id = it.next();
+                it.remove();
+                changed.put(id, toJson(settings.get(id)));
+            }
+            if(changed.isEmpty())
+                return;
+            try {
+                store.write(changed, () -> {
+                    Map<Long,JSONObject> all = new HashMap<>();
+                    settings.forEach((id, s) -> {
+                        JSONObject o = toJson(s);
+                        if(o.length() > 0)
+                            all.put(id, o);
+                    });
+                    return all;
+                });
+            } catch(IOException ex) {
+                // the guilds are written again along with the next change
+                dirty.addAll(changed.keySet());
+                LOG.warn("Failed to write to file: "+ex);
+            }
+        }
+    }
+
+    private Settings fromJson(long guildId, JSONObject o)
+    {
+        // Legacy version support: On versions 0.3.3 and older, the repeat mode was represented as a boolean.
+        if (!o.has("repeat_mode") && o.has("repeat") && o.getBoolean("repeat"))
+            o.put("repeat_mode", RepeatMode.ALL);
+
+        return new Settings(this, guildId,
+                o.has("text_channel_id") ? o.getString("text_channel_id")            : null,
+                o.has("voice_channel_id")? o.getString("voice_channel_id")           : null,
+                o.has("dj_role_id")      ? o.getString("dj_role_id")                 : null,
+                o.has("volume")          ? o.getInt("volume")                        : 100,
+                o.has("default_playlist")? o.getString("default_playlist")           : null,
+                o.has("repeat_mode")     ? o.getEnum(RepeatMode.class, "repeat_mode"): RepeatMode.OFF,
+                o.has("prefix")          ? o.getString("prefix")                     : null,
+                o.has("skip_ratio")      ? o.getDouble("skip_ratio")                 : -1,
+                o.has("queue_type")      ? o.getEnum(QueueType.class, "queue_type")  : QueueType.FAIR,
+                o.has("dedup")           && o.getBoolean("dedup"));
+    }
+
+    private static JSONObject toJson(Settings s)
+    {
+        // one snapshot, so that a change made meanwhile is either written in full or not at all
+        Settings.Values v = s.snapshot();
+        JSONObject o = new JSONObject();
+        if(v.textId!=0)
+            o.put("text_channel_id", Long.toString(v.textId));
+        if(v.voiceId!=0)
+            o.put("voice_channel_id", Long.toString(v.voiceId));
+        if(v.roleId!=0)
+            o.put("dj_role_id", Long.toString(v.roleId));
+        if(v.volume!=100)
+            o.put("volume",v.volume);
+        if(v.defaultPlaylist != null)
+            o.put("default_playlist", v.defaultPlaylist);
+        if(v.repeatMode!=RepeatMode.OFF)
+            o.put("repeat_mode", v.repeatMode);
+        if(v.prefix != null)
+            o.put("prefix", v.prefix);
+        if(v.skipRatio != -1)
+            o.put("skip_ratio", v.skipRatio);
+        if(v.queueType != QueueType.FAIR)
+            o.put("queue_type", v.queueType.name());
+        if(v.dedup)
+            o.put("dedup", true);
+        return o;
+    }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.settings;
+
+import com.jagrosh.jmusicbot.utils.OtherUtil;
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.json.JSONObject;
+
+/**
+ * Where the settings of every guild are kept between runs. The settings of a
+ * guild are handed to a store as the same JSON object that makes up its entry
+ * in serversettings.json, so every store shares one format for them.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public interface SettingsStore
+{
+    public final static String JSON_FILE = "serversettings.json";
+    public final static String JOURNAL_FILE = "serversettings.journal";
+
+    /**
+     * @return the settings of every guild that has been stored, by guild id
+     * @throws IOException if the settings cannot be read
+     */
+    public Map<Long, JSONObject> load() throws IOException;
+
+    /**
+     * Writes the settings of the guilds that changed since the last write
+     *
+     * @param changed the settings of the guilds that changed
+     * @param all the settings of every guild, only asked for by stores that
+     *        write everything at once
+     * @throws IOException if the settings cannot be written
+     */
+    public void write(Map<Long, JSONObject> changed, Supplier<Map<Long, JSONObject>> all) throws IOException;
+
+    public void close() throws IOException;
+
+    /**
+     * @param type {@code json} for a single JSON file, or {@code journal} for
+     *        a journal that only appends the guilds that changed; anything
+     *        else is taken as {@code json}
+     * @return the store
+     */
+    public static SettingsStore create(String type)
+    {
+        if(type.equalsIgnoreCase("journal"))
+            return new JournalSettingsStore(OtherUtil.getPath(JOURNAL_FILE), OtherUtil.getPath(JSON_FILE));
+        return new JsonSettingsStore(OtherUtil.getPath(JSON_FILE));
+    }
+}
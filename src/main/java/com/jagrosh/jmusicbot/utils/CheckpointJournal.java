@@ -0,0 +1,208 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of per-guild records. Every record is framed with its
+ * length and a CRC32 of its contents, so that a record that was only partly
+ * written when the process died is detected and ignored, along with anything
+ * after it.
+ *
+ * A record starts with its type and the id of the guild it belongs to. Only
+ * the latest record of each type is kept for a guild, and a {@link #CLEAR}
+ * record drops everything before it. Once the file has grown well past what
+ * those latest records take, it is compacted by writing them to a new file
+ * that replaces the old one.
+ *
+ * What the types mean is up to whoever writes the journal, such as the queue
+ * checkpoints or the guild settings; they only have to be above 0, below
+ * {@link #MAX_TYPES}, and other than {@link #CLEAR}.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class CheckpointJournal
+{
+    public final static byte CLEAR = 3;
+    public final static int MAX_TYPES = 8;
+    private final static int HEADER_SIZE = 8; // length and checksum
+    private final static int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    private final static long MIN_COMPACT_SIZE = 1024 * 1024;
+
+    private final Path path;
+    private FileChannel channel;
+    private long compactedSize = 0;
+
+    public CheckpointJournal(Path path)
+    {
+        this.path = path;
+    }
+
+    /**
+     * Opens the journal for appending, cutting off a record that was only
+     * partly written
+     *
+     * @return the latest records of every guild, see {@link #latest()}
+     * @throws IOException if the journal cannot be read or opened
+     */
+    public synchronized Map<Long, byte[][]> open() throws IOException
+    {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Map<Long, byte[][]> latest = new HashMap<>();
+        long end = replay(latest);
+        if(end < channel.size())
+            channel.truncate(end);
+        channel.position(end);
+        compactedSize = end;
+        return latest;
+    }
+
+    /**
+     * @return the latest record of each type of every guild, as an array
+     *         indexed by type
+     * @throws IOException if the journal cannot be read
+     */
+    public synchronized Map<Long, byte[][]> latest() throws IOException
+    {
+        Map<Long, byte[][]> latest = new HashMap<>();
+        replay(latest);
+        return latest;
+    }
+
+    /**
+     * Appends records to the journal and forces them to disk before returning
+     *
+     * @param records the records, each starting with its type and guild id
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void append(List<byte[]> records) throws IOException
+    {
+        if(records.isEmpty())
+            return;
+        if(channel == null)
+            throw new IOException("The journal is not open");
+        write(channel, records);
+        channel.force(false);
+        if(channel.size() > Math.max(MIN_COMPACT_SIZE, compactedSize * 2))
+            compact();
+    }
+
+    public synchronized void close() throws IOException
+    {
+        if(channel != null)
+            channel.close();
+        channel = null;
+    }
+
+    public static byte getType(byte[] record)
+    {
+        return record[0];
+    }
+
+    public static long getGuildId(byte[] record)
+    {
+        return ByteBuffer.wrap(record, 1, 8).getLong();
+    }
+
+    private long replay(Map<Long, byte[][]> latest) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        long position = 0;
+        long size = channel.size();
+        while(position + HEADER_SIZE <= size)
+        {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if(length < 9 || length > MAX_RECORD_SIZE || position + HEADER_SIZE + length > size)
+                break;
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(body, position + HEADER_SIZE);
+            crc.reset();
+            crc.update(body.array());
+            if((int) crc.getValue() != checksum)
+                break;
+            byte[] record = body.array();
+            long guildId = getGuildId(record);
+            byte type = getType(record);
+            if(type == CLEAR)
+                latest.remove(guildId);
+            else if(type > 0 && type < MAX_TYPES)
+                latest.computeIfAbsent(guildId, k -> new byte[MAX_TYPES][])[type] = record;
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException
+    {
+        while(buffer.hasRemaining())
+            if(channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of the checkpoint journal");
+    }
+
+    private void compact() throws IOException
+    {
+        List<byte[]> records = new ArrayList<>();
+        for(byte[][] guild: latest().values())
+            for(byte[] record: guild)
+                if(record != null)
+                    records.add(record);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            write(out, records);
+            out.force(false);
+        }
+        // the old journal stays in place until the new one is complete
+        channel.close();
+        OtherUtil.replaceFile(temp, path);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        compactedSize = channel.size();
+        channel.position(compactedSize);
+    }
+
+    private static void write(FileChannel out, List<byte[]> records) throws IOException
+    {
+        int total = 0;
+        for(byte[] record: records)
+            total += HEADER_SIZE + record.length;
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        CRC32 crc = new CRC32();
+        for(byte[] record: records)
+        {
+            crc.reset();
+            crc.update(record);
+            buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        }
+        buffer.flip();
+        while(buffer.hasRemaining())
+            out.write(buffer);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * A map from long keys, such as snowflakes, to values, without boxing the
+ * keys. Reads never lock and can run alongside writes from any thread; writes
+ * lock the map.
+ *
+ * The map is an open-addressing table with linear probing. A slot gets its
+ * key once and keeps it for as long as the table lives, and its value is set
+ * and read atomically, so a reader can never see a value with the wrong key.
+ * Removing a key leaves a marker in its slot rather than moving other keys
+ * around, and the markers are cleared out whenever the table is rebuilt.
+ *
+ * This is meant for state shared between threads, such as per-guild state
+ * touched by JDA and the scheduler. The queues keep their per-user counts in
+ * a plain map of their own instead, since those are only used under the
+ * queue's lock and change with every track.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ * @param <V> the type of the values
+ */
+public class ConcurrentLongMap<V>
+{
+    private final static Object REMOVED = new Object();
+
+    private volatile Table table = new Table(16);
+    private int size = 0;
+    private int used = 0; // slots with a key, including removed ones
+
+    /**
+     * @return the value of the key, or null if it has none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        Table t = table;
+        int slot = t.find(key);
+        if(slot < 0)
+            return null;
+        Object value = t.values.get(slot);
+        return value == REMOVED ? null : (V) value;
+    }
+
+    public boolean containsKey(long key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value of the key, or null if it had none
+     */
+    public synchronized V put(long key, V value)
+    {
+        if(value == null)
+            throw new NullPointerException();
+        int slot = slotFor(key);
+        V previous = valueAt(slot);
+        table.values.set(slot, value);
+        if(previous == null)
+            size++;
+        return previous;
+    }
+
+    /**
+     * @return the value the key already had, or null if the value was added
+     */
+    public V putIfAbsent(long key, V value)
+    {
+        V current = get(key);
+        if(current != null)
+            return current;
+        synchronized(this)
+        {
+            int slot = slotFor(key);
+            current = valueAt(slot);
+            if(current == null)
+            {
+                table.values.set(slot, value);
+                size++;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Gets the value of a key, or computes and adds one if it has none. The
+     * function is only called while the map is locked, so it is called at
+     * most once for a key that is missing.
+     *
+     * @param key the key
+     * @param function computes the value, must not return null
+     * @return the value of the key
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> function)
+    {
+        V current = get(key);
+        if(current != null)
+            return current;
+        synchronized(this)
+        {
+            current = get(key);
+            if(current != null)
+                return current;
+            V value = function.apply(key);
+            put(key, value);
+            return value;
+        }
+    }
+
+    /**
+     * @return the value the key had, or null if it had none
+     */
+    public synchronized V remove(long key)
+    {
+        int slot = table.find(key);
+        if(slot < 0)
+            return null;
+        V previous = valueAt(slot);
+        if(previous != null)
+        {
+            table.values.set(slot, REMOVED);
+            size--;
+        }
+        return previous;
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    public synchronized void clear()
+    {
+        if(used == 0)
+            return;
+        table = new Table(16);
+        size = 0;
+        used = 0;
+    }
+
+    /**
+     * Visits every entry. Entries added or removed while visiting may or may
+     * not be visited.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Visitor<? super V> visitor)
+    {
+        Table t = table;
+        for(int slot = 0; slot < t.keys.length; slot++)
+        {
+            Object value = t.values.get(slot);
+            if(value != null && value != REMOVED)
+                visitor.visit(t.keys[slot], (V) value);
+        }
+    }
+
+    /**
+     * @return the slot of the key, giving the key a slot if it has none
+     */
+    private int slotFor(long key)
+    {
+        int slot = table.find(key);
+        if(slot >= 0)
+            return slot;
+        if((used + 1) * 4 > table.keys.length * 3)
+        {
+            // rebuilding clears the removed slots, so the table only grows if over half of it is live keys
+            rebuild((size + 1) * 2 > table.keys.length ? table.keys.length * 2 : table.keys.length);
+            slot = table.find(key);
+        }
+        slot = -slot - 1;
+        // the key is set before any value is, and the value is published atomically after it
+        table.keys[slot] = key;
+        table.values.set(slot, REMOVED);
+        used++;
+        return slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int slot)
+    {
+        Object value = table.values.get(slot);
+        return value == REMOVED ? null : (V) value;
+    }
+
+    private void rebuild(int capacity)
+    {
+        Table old = table;
+        Table next = new Table(capacity);
+        used = 0;
+        for(int slot = 0; slot < old.keys.length; slot++)
+        {
+            Object value = old.values.get(slot);
+            if(value == null || value == REMOVED)
+                continue;
+            int to = -next.find(old.keys[slot]) - 1;
+            next.keys[to] = old.keys[slot];
+            next.values.set(to, value);
+            used++;
+        }
+        // the new table is only published once it is complete
+        table = next;
+    }
+
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static class Table
+    {
+        private final long[] keys;
+        private final AtomicReferenceArray<Object> values;
+
+        private Table(int capacity)
+        {
+            keys = new long[capacity];
+            values = new AtomicReferenceArray<>(capacity);
+        }
+
+        /**
+         * @return the slot of the key, or -(slot + 1) for the empty slot where it would go
+         */
+        private int find(long key)
+        {
+            int mask = keys.length - 1;
+            for(int slot = hash(key) & mask; ; slot = (slot + 1) & mask)
+            {
+                if(values.get(slot) == null)
+                    return -slot - 1;
+                if(keys[slot] == key)
+                    return slot;
+            }
+        }
+    }
+
+    public interface Visitor<V>
+    {
+        void visit(long key, V value);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.utils;
+
+import java.util.function.LongConsumer;
+
+/**
+ * A set of longs, such as snowflakes, without boxing. It has the same
+ * guarantees as {@link ConcurrentLongMap}, which it keeps its keys in.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class ConcurrentLongSet
+{
+    private final ConcurrentLongMap<Boolean> map = new ConcurrentLongMap<>();
+
+    /**
+     * @return true if the value was not in the set yet
+     */
+    public boolean add(long value)
+    {
+        return map.putIfAbsent(value, Boolean.TRUE) == null;
+    }
+
+    public boolean contains(long value)
+    {
+        return map.containsKey(value);
+    }
+
+    /**
+     * @return true if the value was in the set
+     */
+    public boolean remove(long value)
+    {
+        return map.remove(value) != null;
+    }
+
+    public int size()
+    {
+        return map.size();
+    }
+
+    public void clear()
+    {
+        map.clear();
+    }
+
+    public void forEach(LongConsumer consumer)
+    {
+        map.forEach((value, present) -> consumer.accept(value));
+    }
+}
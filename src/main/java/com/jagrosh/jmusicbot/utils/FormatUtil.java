@@ -61,6 +61,15 @@ public class FormatUtil {
         return str;
     }
     
+    /**
+     * @param eta the time until a track plays, in milliseconds, or -1 if it is not known
+     * @return a note about when the track plays, or nothing if it is not known
+     */
+    public static String eta(long eta)
+    {
+        return eta < 0 ? "" : " (plays in about `" + TimeUtil.formatTime(eta) + "`)";
+    }
+    
     public static String volumeIcon(int volume)
     {
         if(volume == 0)
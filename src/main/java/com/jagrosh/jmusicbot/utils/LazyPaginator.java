@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.utils;
+
+import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
+import java.awt.Color;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.MessageBuilder;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageChannel;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
+import net.dv8tion.jda.api.exceptions.PermissionException;
+
+/**
+ * A paginator like the one from jda-utilities, except that it does not take
+ * every item up front. Only the items of the page that is shown are asked
+ * for, so a long list costs no more to show than a short one.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class LazyPaginator
+{
+    private final static String LEFT = "\u25C0";  // ◀
+    private final static String STOP = "\u23F9";  // ⏹
+    private final static String RIGHT = "\u25B6"; // ▶
+
+    private final EventWaiter waiter;
+    private final int itemsPerPage;
+    private final long timeout;
+    private final TimeUnit unit;
+
+    public LazyPaginator(EventWaiter waiter, int itemsPerPage, long timeout, TimeUnit unit)
+    {
+        this.waiter = waiter;
+        this.itemsPerPage = itemsPerPage;
+        this.timeout = timeout;
+        this.unit = unit;
+    }
+
+    /**
+     * Shows a page of the items, with reactions to move between the pages
+     *
+     * @param channel the channel to send the page to
+     * @param user the user that may move between the pages
+     * @param color the color of the embed
+     * @param total the number of items
+     * @param text renders the text above the embed, from the page and the number of pages
+     * @param items renders the items from the first index up to the second one
+     * @param page the page to show first, starting at 1
+     */
+    public void paginate(MessageChannel channel, User user, Color color, int total,
+            BiFunction<Integer, Integer, String> text, BiFunction<Integer, Integer, List<String>> items, int page)
+    {
+        int pages = Math.max(1, (total + itemsPerPage - 1) / itemsPerPage);
+        int shown = Math.min(Math.max(page, 1), pages);
+        Page rendered = new Page(color, total, pages, text, items);
+        channel.sendMessage(rendered.render(shown)).queue(m ->
+        {
+            if(pages == 1)
+            {
+                finish(m);
+                return;
+            }
+            m.addReaction(LEFT).queue();
+            m.addReaction(STOP).queue();
+            m.addReaction(RIGHT).queue(v -> waitForReaction(m, user, rendered, shown), t -> waitForReaction(m, user, rendered, shown));
+        });
+    }
+
+    private void waitForReaction(Message message, User user, Page rendered, int page)
+    {
+        waiter.waitForEvent(MessageReactionAddEvent.class, event -> event.getMessageIdLong() == message.getIdLong()
+                && event.getUserIdLong() == user.getIdLong()
+                && event.getReactionEmote().isEmoji()
+                && (LEFT.equals(event.getReactionEmote().getName())
+                    || STOP.equals(event.getReactionEmote().getName())
+                    || RIGHT.equals(event.getReactionEmote().getName())),
+            event ->
+            {
+                String name = event.getReactionEmote().getName();
+                if(STOP.equals(name))
+                {
+                    finish(message);
+                    return;
+                }
+                // the ends wrap around to each other
+                int next = LEFT.equals(name)
+                        ? (page == 1 ? rendered.pages : page - 1)
+                        : (page == rendered.pages ? 1 : page + 1);
+                try
+                {
+                    event.getReaction().removeReaction(user).queue();
+                }
+                catch(PermissionException ignore) {}
+                message.editMessage(rendered.render(next)).queue(m -> waitForReaction(m, user, rendered, next));
+            }, timeout, unit, () -> finish(message));
+    }
+
+    private static void finish(Message message)
+    {
+        try
+        {
+            message.clearReactions().queue();
+        }
+        catch(PermissionException | IllegalStateException ignore) {}
+    }
+
+    private class Page
+    {
+        private final Color color;
+        private final int total;
+        private final int pages;
+        private final BiFunction<Integer, Integer, String> text;
+        private final BiFunction<Integer, Integer, List<String>> items;
+
+        private Page(Color color, int total, int pages, BiFunction<Integer, Integer, String> text,
+                BiFunction<Integer, Integer, List<String>> items)
+        {
+            this.color = color;
+            this.total = total;
+            this.pages = pages;
+            this.text = text;
+            this.items = items;
+        }
+
+        private Message render(int page)
+        {
+            int from = (page - 1) * itemsPerPage;
+            int to = Math.min(total, from + itemsPerPage);
+            StringBuilder sb = new StringBuilder();
+            List<String> shown = items.apply(from, to);
+            for(int i=0; i<shown.size(); i++)
+                sb.append("\n`").append(from + i + 1).append(".` ").append(shown.get(i));
+            EmbedBuilder eb = new EmbedBuilder()
+                    .setColor(color)
+                    .setDescription(sb.toString().trim())
+                    .setFooter("Page " + page + "/" + pages, null);
+            return new MessageBuilder()
+                    .setContent(text.apply(page, pages))
+                    .setEmbeds(eb.build())
+                    .build();
+        }
+    }
+}
@@ -21,8 +21,11 @@ import java.io.*;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.OnlineStatus;
@@ -69,6 +72,27 @@ public class OtherUtil
         return result;
     }
     
+    /**
+     * Moves a file over another, atomically where the file system allows it.
+     * Some file systems, such as a few network shares, cannot replace a file
+     * atomically, and on those the file is replaced with a plain move instead.
+     * 
+     * @param source the file to move, such as a temporary file just written
+     * @param target the file to replace
+     * @throws IOException if the file cannot be moved
+     */
+    public static void replaceFile(Path source, Path target) throws IOException
+    {
+        try
+        {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException e)
+        {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
     /**
      * Loads a resource from the jar as a string
      * 
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.audio.AudioSendBuffer;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrameProvider;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class AudioSendBufferTest
+{
+    private static final int WARMUP_FRAMES = 200_000;
+    private static final int MEASURED_FRAMES = 100_000;
+    // reading the allocation counter can allocate a little itself, but far less than a byte per frame would
+    private static final long MEASURING_OVERHEAD = 1024;
+
+    @Test
+    public void providesFrameData()
+    {
+        AudioSendBuffer buffer = new AudioSendBuffer(new FixedProvider(new byte[]{1, 2, 3}));
+        assertTrue(buffer.canProvide(true));
+        ByteBuffer data = buffer.provide20MsAudio();
+        assertEquals(3, data.remaining());
+        assertEquals(1, data.get());
+        assertEquals(2, data.get());
+        assertEquals(3, data.get());
+
+        // the next frame must start at the beginning of the buffer again
+        assertTrue(buffer.canProvide(true));
+        assertEquals(3, buffer.provide20MsAudio().remaining());
+    }
+
+    @Test
+    public void nothingToProvide()
+    {
+        AudioSendBuffer buffer = new AudioSendBuffer(new FixedProvider(null));
+        assertFalse(buffer.canProvide(true));
+    }
+
+    @Test
+    public void lookaheadDeliversEveryFrame()
+    {
+        // the provider has 20 frames ready and then runs dry
+        FixedProvider provider = new FixedProvider(new byte[]{7}, 20);
+        AudioSendBuffer buffer = new AudioSendBuffer(provider, 10);
+        for(int i=0; i<20; i++)
+        {
+            assertTrue(buffer.canProvide(true));
+            assertEquals(7, buffer.provide20MsAudio().get());
+        }
+        assertEquals(0, buffer.getUnderruns());
+        assertFalse(buffer.canProvide(true));
+        assertEquals(1, buffer.getUnderruns());
+    }
+
+    @Test
+    public void lookaheadServesBufferedFramesDuringStall()
+    {
+        FixedProvider provider = new FixedProvider(new byte[]{7}, 10);
+        AudioSendBuffer buffer = new AudioSendBuffer(provider, 10);
+        assertTrue(buffer.canProvide(true));
+        buffer.provide20MsAudio();
+        // the provider is now empty, but the ring still holds nine frames
+        assertEquals(0, provider.remaining);
+        for(int i=0; i<9; i++)
+            assertTrue(buffer.canProvide(true));
+        assertEquals(0, buffer.getUnderruns());
+        assertFalse(buffer.canProvide(true));
+        assertEquals(1, buffer.getUnderruns());
+    }
+
+    @Test
+    public void withoutLookaheadStallIsUnderrun()
+    {
+        FixedProvider provider = new FixedProvider(new byte[]{7}, 1);
+        AudioSendBuffer buffer = new AudioSendBuffer(provider);
+        assertTrue(buffer.canProvide(true));
+        assertFalse(buffer.canProvide(true));
+        assertEquals(1, buffer.getUnderruns());
+        // no underrun is counted when nothing is expected
+        assertFalse(buffer.canProvide(false));
+        assertEquals(1, buffer.getUnderruns());
+    }
+
+    @Test
+    public void discardDropsBufferedFrames()
+    {
+        FixedProvider provider = new FixedProvider(new byte[]{7}, 5);
+        AudioSendBuffer buffer = new AudioSendBuffer(provider, 10);
+        assertTrue(buffer.canProvide(true));
+        buffer.discard();
+        assertFalse(buffer.canProvide(false));
+    }
+
+    @Test
+    public void bufferedCountsFramesNotSentYet()
+    {
+        FixedProvider provider = new FixedProvider(new byte[]{7}, 5);
+        AudioSendBuffer buffer = new AudioSendBuffer(provider, 10);
+        assertEquals(0, buffer.getBuffered());
+        assertTrue(buffer.canProvide(true));
+        assertEquals(4, buffer.getBuffered());
+        assertTrue(buffer.canProvide(true));
+        assertEquals(3, buffer.getBuffered());
+        // frames that are about to be dropped are no longer counted
+        buffer.discard();
+        assertEquals(0, buffer.getBuffered());
+    }
+
+    @Test
+    public void lastFrameTimeOnlyMovesWithFrames()
+    {
+        AudioSendBuffer buffer = new AudioSendBuffer(new FixedProvider(new byte[]{7}, 1));
+        long created = buffer.getLastFrameTime();
+        assertTrue(buffer.canProvide(true));
+        long provided = buffer.getLastFrameTime();
+        assertTrue(provided - created >= 0);
+        assertFalse(buffer.canProvide(true));
+        assertEquals(provided, buffer.getLastFrameTime());
+    }
+
+    @Test
+    public void steadyStateAllocatesNothing()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        long allocated = allocated(threads, new AudioSendBuffer(new FixedProvider(new byte[160])));
+        assertTrue("allocated " + allocated + " bytes over " + MEASURED_FRAMES + " frames", allocated <= MEASURING_OVERHEAD);
+        allocated = allocated(threads, new AudioSendBuffer(new FixedProvider(new byte[160]), 25));
+        assertTrue("allocated " + allocated + " bytes over " + MEASURED_FRAMES + " frames with lookahead", allocated <= MEASURING_OVERHEAD);
+    }
+
+    /**
+     * @return the bytes allocated while sending {@link #MEASURED_FRAMES} frames, in total
+     */
+    private static long allocated(com.sun.management.ThreadMXBean threads, AudioSendBuffer buffer)
+    {
+        long sink = sendFrames(buffer, WARMUP_FRAMES);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        sink += sendFrames(buffer, MEASURED_FRAMES);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals((long) (WARMUP_FRAMES + MEASURED_FRAMES) * 160, sink);
+        return allocated;
+    }
+
+    private static long sendFrames(AudioSendBuffer buffer, int frames)
+    {
+        long sent = 0;
+        for(int i=0; i<frames; i++)
+        {
+            if(buffer.canProvide(true))
+                sent += buffer.provide20MsAudio().remaining();
+        }
+        return sent;
+    }
+
+    private static class FixedProvider implements AudioFrameProvider
+    {
+        private final byte[] data;
+        private long remaining;
+
+        private FixedProvider(byte[] data)
+        {
+            this(data, Long.MAX_VALUE);
+        }
+
+        private FixedProvider(byte[] data, long frames)
+        {
+            this.data = data;
+            this.remaining = frames;
+        }
+
+        @Override
+        public AudioFrame provide()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AudioFrame provide(long timeout, TimeUnit unit)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean provide(MutableAudioFrame targetFrame)
+        {
+            if(data == null || remaining == 0)
+                return false;
+            remaining--;
+            targetFrame.store(data, 0, data.length);
+            return true;
+        }
+
+        @Override
+        public boolean provide(MutableAudioFrame targetFrame, long timeout, TimeUnit unit)
+        {
+            // waiting for a frame would hold up the audio thread
+            throw new UnsupportedOperationException();
+        }
+    }
+}
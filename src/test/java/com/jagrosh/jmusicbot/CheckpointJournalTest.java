@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.utils.CheckpointJournal;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class CheckpointJournalTest
+{
+    private final static byte QUEUE = 1, CURRENT = 2;
+
+    @Test
+    public void latestRecordsWin() throws IOException
+    {
+        Path path = Files.createTempFile("checkpoint", ".journal");
+        CheckpointJournal journal = new CheckpointJournal(path);
+        journal.open();
+        journal.append(Arrays.asList(record(QUEUE, 1, 10), record(CURRENT, 1, 11),
+                record(CURRENT, 2, 20)));
+        journal.append(Arrays.asList(record(CURRENT, 1, 12), record(CheckpointJournal.CLEAR, 2, 0)));
+        journal.close();
+
+        Map<Long, byte[][]> latest = new CheckpointJournal(path).open();
+        assertEquals(Collections.singleton(1L), latest.keySet());
+        assertArrayEquals(record(QUEUE, 1, 10), latest.get(1L)[QUEUE]);
+        assertArrayEquals(record(CURRENT, 1, 12), latest.get(1L)[CURRENT]);
+    }
+
+    @Test
+    public void tornWriteIsDropped() throws IOException
+    {
+        Path path = Files.createTempFile("checkpoint", ".journal");
+        CheckpointJournal journal = new CheckpointJournal(path);
+        journal.open();
+        journal.append(Collections.singletonList(record(CURRENT, 1, 1)));
+        journal.append(Collections.singletonList(record(CURRENT, 1, 2)));
+        journal.close();
+        // cut the last record short, like a crash in the middle of a write
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+        {
+            channel.truncate(channel.size() - 3);
+        }
+
+        journal = new CheckpointJournal(path);
+        assertArrayEquals(record(CURRENT, 1, 1), journal.open().get(1L)[CURRENT]);
+        // new records go after the last complete one
+        journal.append(Collections.singletonList(record(CURRENT, 1, 3)));
+        assertArrayEquals(record(CURRENT, 1, 3), journal.latest().get(1L)[CURRENT]);
+        journal.close();
+    }
+
+    @Test
+    public void compactionKeepsLatestRecords() throws IOException
+    {
+        Path path = Files.createTempFile("checkpoint", ".journal");
+        CheckpointJournal journal = new CheckpointJournal(path);
+        journal.open();
+        byte[] padding = new byte[4096];
+        for(int i=0; i<1000; i++)
+            journal.append(Collections.singletonList(ByteBuffer.allocate(17 + padding.length)
+                    .put(QUEUE).putLong(i % 4).putLong(i).put(padding).array()));
+        assertTrue(Files.size(path) < 1000 * 4096);
+        journal.close();
+
+        Map<Long, byte[][]> latest = new CheckpointJournal(path).open();
+        assertEquals(4, latest.size());
+        for(long guild=0; guild<4; guild++)
+            assertEquals(996 + guild, ByteBuffer.wrap(latest.get(guild)[QUEUE], 9, 8).getLong());
+    }
+
+    private static byte[] record(byte type, long guildId, long value)
+    {
+        return ByteBuffer.allocate(17).put(type).putLong(guildId).putLong(value).array();
+    }
+}
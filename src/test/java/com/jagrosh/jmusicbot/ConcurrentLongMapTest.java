@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.utils.ConcurrentLongMap;
+import com.jagrosh.jmusicbot.utils.ConcurrentLongSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class ConcurrentLongMapTest
+{
+    @Test
+    public void matchesHashMap()
+    {
+        Random random = new Random(3);
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        Map<Long, Long> reference = new HashMap<>();
+        for(int i=0; i<100000; i++)
+        {
+            long key = random.nextInt(2000) * 1000003L;
+            int op = random.nextInt(4);
+            if(op == 0)
+                assertEquals(reference.remove(key), map.remove(key));
+            else if(op == 1)
+                assertEquals(reference.put(key, (long) i), map.put(key, (long) i));
+            else if(op == 2)
+                assertEquals(reference.computeIfAbsent(key, k -> k), map.computeIfAbsent(key, k -> k));
+            else
+                assertEquals(reference.get(key), map.get(key));
+        }
+        assertEquals(reference.size(), map.size());
+        Map<Long, Long> visited = new HashMap<>();
+        map.forEach((key, value) -> visited.put(key, value));
+        assertEquals(reference, visited);
+    }
+
+    @Test
+    public void readersSeeEveryKeyWhileItIsWritten() throws InterruptedException
+    {
+        // keys below 1000 are never removed, so readers must always find them, even during rebuilds
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        for(long key=0; key<1000; key++)
+            map.put(key, key);
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread[] readers = new Thread[4];
+        for(int i=0; i<readers.length; i++)
+        {
+            long seed = i;
+            readers[i] = new Thread(() -> {
+                Random random = new Random(seed);
+                while(!done.get())
+                {
+                    long key = random.nextInt(1000);
+                    Long value = map.get(key);
+                    if(value == null || value != key)
+                        failed.set(true);
+                }
+            });
+            readers[i].start();
+        }
+        Random random = new Random(9);
+        for(int i=0; i<200000; i++)
+        {
+            long key = 1000 + random.nextInt(50000);
+            if(random.nextBoolean())
+                map.put(key, key);
+            else
+                map.remove(key);
+        }
+        done.set(true);
+        for(Thread reader: readers)
+            reader.join();
+        assertFalse(failed.get());
+    }
+
+    @Test
+    public void concurrentPutsAreNeverLost() throws InterruptedException
+    {
+        // every thread adds its own keys from an empty map, so the table is rebuilt many times while they write
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        Thread[] writers = new Thread[4];
+        int perThread = 20000;
+        for(int i=0; i<writers.length; i++)
+        {
+            long offset = i * 1000000L;
+            writers[i] = new Thread(() -> {
+                for(long key=offset; key<offset+perThread; key++)
+                    map.put(key, key);
+            });
+            writers[i].start();
+        }
+        for(Thread writer: writers)
+            writer.join();
+        assertEquals(writers.length * perThread, map.size());
+        for(int i=0; i<writers.length; i++)
+            for(long key=i*1000000L; key<i*1000000L+perThread; key++)
+                assertEquals(Long.valueOf(key), map.get(key));
+    }
+
+    @Test
+    public void computeIfAbsentCreatesOneValuePerKey() throws InterruptedException
+    {
+        ConcurrentLongMap<Object> map = new ConcurrentLongMap<>();
+        AtomicInteger created = new AtomicInteger();
+        Object[][] seen = new Object[4][1000];
+        Thread[] threads = new Thread[seen.length];
+        for(int i=0; i<threads.length; i++)
+        {
+            Object[] mine = seen[i];
+            threads[i] = new Thread(() -> {
+                for(int key=0; key<mine.length; key++)
+                    mine[key] = map.computeIfAbsent(key, k -> { created.incrementAndGet(); return new Object(); });
+            });
+            threads[i].start();
+        }
+        for(Thread thread: threads)
+            thread.join();
+        assertEquals(1000, created.get());
+        for(int key=0; key<1000; key++)
+            for(Object[] mine: seen)
+                assertSame(map.get(key), mine[key]);
+    }
+
+    @Test
+    public void setAddsEachValueOnce() throws InterruptedException
+    {
+        ConcurrentLongSet set = new ConcurrentLongSet();
+        AtomicInteger added = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for(int i=0; i<threads.length; i++)
+        {
+            threads[i] = new Thread(() -> {
+                for(long value=0; value<5000; value++)
+                    if(set.add(value))
+                        added.incrementAndGet();
+            });
+            threads[i].start();
+        }
+        for(Thread thread: threads)
+            thread.join();
+        assertEquals(5000, added.get());
+        assertEquals(5000, set.size());
+        assertTrue(set.remove(42));
+        assertFalse(set.contains(42));
+        assertFalse(set.remove(42));
+    }
+}
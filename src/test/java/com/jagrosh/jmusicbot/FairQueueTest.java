@@ -16,7 +16,15 @@
 package com.jagrosh.jmusicbot;
 
 import com.jagrosh.jmusicbot.queue.FairQueue;
+import com.jagrosh.jmusicbot.queue.QueueStore;
 import com.jagrosh.jmusicbot.queue.Queueable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -46,6 +54,410 @@ public class FairQueueTest
         assertEquals(queue.size(), size);
     }
     
+    @Test
+    public void chunkedStoreMatchesLinkedStore()
+    {
+        // every operation is applied to both stores, which must agree after each one
+        Random random = new Random(42);
+        for(int round=0; round<20; round++)
+        {
+            FairQueue<Q> linked = new FairQueue<>(null, QueueStore.LINKED);
+            FairQueue<Q> chunked = new FairQueue<>(null, QueueStore.CHUNKED);
+            for(int op=0; op<2000; op++)
+            {
+                int size = linked.size();
+                int choice = random.nextInt(10);
+                if(choice < 5 || size == 0)
+                {
+                    Q item = new Q(random.nextInt(8));
+                    assertEquals(linked.add(item), chunked.add(item));
+                }
+                else if(choice == 5)
+                {
+                    int index = random.nextInt(size + 2);
+                    Q item = new Q(random.nextInt(8));
+                    linked.addAt(index, item);
+                    chunked.addAt(index, item);
+                }
+                else if(choice == 6)
+                {
+                    int index = random.nextInt(size);
+                    assertSame(linked.remove(index), chunked.remove(index));
+                }
+                else if(choice == 7)
+                {
+                    int from = random.nextInt(size), to = random.nextInt(size);
+                    assertSame(linked.moveItem(from, to), chunked.moveItem(from, to));
+                }
+                else if(choice == 8)
+                {
+                    long identifier = random.nextInt(8);
+                    assertEquals(linked.removeAll(identifier), chunked.removeAll(identifier));
+                }
+                else if(random.nextBoolean())
+                {
+                    int number = random.nextInt(Math.min(size, 20) + 1);
+                    linked.skip(number);
+                    chunked.skip(number);
+                }
+                else
+                    assertSame(linked.pull(), chunked.pull());
+                assertEquals(linked.getList(), chunked.getList());
+            }
+        }
+    }
+    
+    @Test
+    public void switchingStoreKeepsItems()
+    {
+        FairQueue<Q> linked = new FairQueue<>(null, QueueStore.LINKED);
+        for(int i=0; i<500; i++)
+            linked.add(new Q(i % 7));
+        FairQueue<Q> chunked = new FairQueue<>(linked, QueueStore.CHUNKED);
+        assertEquals(linked.getList(), chunked.getList());
+        assertEquals(chunked.getList(), new FairQueue<>(chunked, QueueStore.CHUNKED).getList());
+    }
+    
+    @Test
+    public void sameOrderAsFullScan()
+    {
+        // the reference is the original add, which scans the whole list every time
+        Random random = new Random(7);
+        for(int round=0; round<50; round++)
+        {
+            FairQueue<Q> queue = new FairQueue<>(null, QueueStore.CHUNKED);
+            List<Q> reference = new ArrayList<>();
+            int owners = 1 + random.nextInt(12);
+            for(int op=0; op<1500; op++)
+            {
+                int size = reference.size();
+                int choice = random.nextInt(20);
+                if(choice < 14 || size == 0)
+                {
+                    Q item = new Q(random.nextInt(owners));
+                    assertEquals(fullScanAdd(reference, item), queue.add(item));
+                }
+                else if(choice < 16)
+                    assertSame(reference.remove(0), queue.pull());
+                else if(choice == 16)
+                {
+                    long identifier = random.nextInt(owners);
+                    reference.removeIf(q -> q.getIdentifier() == identifier);
+                    queue.removeAll(identifier);
+                }
+                else if(choice == 17)
+                {
+                    int from = random.nextInt(size), to = random.nextInt(size);
+                    reference.add(to, reference.remove(from));
+                    queue.moveItem(from, to);
+                }
+                else if(choice == 18)
+                {
+                    int index = random.nextInt(size);
+                    assertSame(reference.remove(index), queue.remove(index));
+                }
+                else if(random.nextInt(10) == 0)
+                {
+                    reference.clear();
+                    queue.clear();
+                }
+                else
+                {
+                    int number = random.nextInt(Math.min(size, 5) + 1);
+                    reference.subList(0, number).clear();
+                    queue.skip(number);
+                }
+                assertEquals(reference, queue.getList());
+            }
+        }
+    }
+    
+    @Test
+    public void ownerIndexFollowsChanges()
+    {
+        Random random = new Random(11);
+        FairQueue<Q> queue = new FairQueue<>(null, QueueStore.CHUNKED);
+        for(int op=0; op<5000; op++)
+        {
+            int size = queue.size();
+            int choice = random.nextInt(9);
+            if(choice < 4 || size == 0)
+                queue.add(new Q(random.nextInt(10)));
+            else if(choice == 4)
+                queue.addAt(random.nextInt(size + 1), new Q(random.nextInt(10)));
+            else if(choice == 5)
+                queue.remove(random.nextInt(size));
+            else if(choice == 6)
+                queue.skip(random.nextInt(Math.min(size, 3) + 1));
+            else if(choice == 7)
+                queue.shuffle(random.nextInt(10));
+            else
+                queue.removeAll(random.nextInt(10));
+            
+            long identifier = random.nextInt(10);
+            List<Integer> expected = new ArrayList<>();
+            long total = 0, ownerTotal = 0, ownerSize = 0;
+            for(int i=0; i<queue.size(); i++)
+            {
+                if(queue.get(i).getIdentifier() == identifier)
+                {
+                    expected.add(i);
+                    ownerTotal += queue.get(i).getDuration();
+                    ownerSize += queue.get(i).getEstimatedSize();
+                }
+                total += queue.get(i).getDuration();
+            }
+            assertEquals(total, queue.getTotalDuration());
+            assertEquals(ownerTotal, queue.getTotalDuration(identifier));
+            assertEquals(ownerSize, queue.getEstimatedSize(identifier));
+            assertEquals(expected.isEmpty() ? -1 : (int) expected.get(0), queue.firstIndexOf(identifier));
+            int index = random.nextInt(queue.size() + 1);
+            long before = 0;
+            for(int i=0; i<index; i++)
+                before += queue.get(i).getDuration();
+            assertEquals(before, queue.getDurationBefore(index));
+            int[] positions = queue.positionsOf(identifier);
+            assertEquals(expected.size(), queue.count(identifier));
+            assertEquals(expected.size(), positions.length);
+            for(int i=0; i<positions.length; i++)
+                assertEquals((int) expected.get(i), positions[i]);
+        }
+    }
+    
+    @Test
+    public void addAllMatchesSeparateAdds()
+    {
+        Random random = new Random(5);
+        for(int round=0; round<30; round++)
+        {
+            FairQueue<Q> batched = new FairQueue<>(null, QueueStore.CHUNKED);
+            List<Q> reference = new ArrayList<>();
+            for(int batch=0; batch<20; batch++)
+            {
+                // playlists are added by one user at a time, but mixed batches must work too
+                List<Q> items = new ArrayList<>();
+                int owner = random.nextInt(6);
+                int size = random.nextInt(200);
+                for(int i=0; i<size; i++)
+                    items.add(new Q(random.nextInt(4) == 0 ? random.nextInt(6) : owner));
+                for(Q item: items)
+                    fullScanAdd(reference, item);
+                batched.addAll(items);
+                assertEquals(reference, batched.getList());
+                if(random.nextBoolean() && !reference.isEmpty())
+                {
+                    reference.remove(0);
+                    batched.pull();
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void duplicatesFollowChanges()
+    {
+        FairQueue<Q> queue = new FairQueue<>(null, QueueStore.CHUNKED);
+        queue.add(new Q(1));
+        queue.add(new Q(2));
+        assertFalse(queue.isDuplicate(new Q(1)));
+        queue.setDeduplicating(true);
+        assertTrue(queue.isDuplicate(new Q(1)));
+        assertEquals(1, queue.withoutDuplicates(Arrays.asList(new Q(1), new Q(3), new Q(3))).size());
+        queue.moveItem(0, 1);
+        assertTrue(queue.isDuplicate(new Q(1)));
+        queue.skip(1);
+        assertFalse(queue.isDuplicate(new Q(2)));
+        queue.add(new Q(3));
+        queue.add(new Q(3));
+        queue.remove(queue.size() - 1);
+        assertTrue(queue.isDuplicate(new Q(3)));
+        queue.removeAll(3);
+        assertFalse(queue.isDuplicate(new Q(3)));
+        queue.clear();
+        assertFalse(queue.isDuplicate(new Q(1)));
+        queue.setDeduplicating(false);
+        queue.add(new Q(4));
+        assertFalse(queue.isDuplicate(new Q(4)));
+    }
+    
+    @Test
+    public void rangeOperationsMatchReference()
+    {
+        Random random = new Random(11);
+        for(QueueStore store: QueueStore.values())
+        {
+            FairQueue<Q> queue = new FairQueue<>(null, store);
+            List<Q> reference = new ArrayList<>();
+            for(int step=0; step<300; step++)
+            {
+                for(int i=random.nextInt(40); i>0; i--)
+                {
+                    Q item = new Q(random.nextInt(6));
+                    reference.add(queue.add(item), item);
+                }
+                int from = random.nextInt(reference.size() + 1);
+                int to = from + random.nextInt(reference.size() - from + 1);
+                switch(random.nextInt(4))
+                {
+                    case 0:
+                        assertEquals(new ArrayList<>(reference.subList(from, to)), queue.removeRange(from, to));
+                        reference.subList(from, to).clear();
+                        break;
+                    case 1:
+                        List<Q> moved = new ArrayList<>(reference.subList(from, to));
+                        reference.subList(from, to).clear();
+                        int position = random.nextInt(reference.size() + 1);
+                        reference.addAll(position, moved);
+                        assertEquals(moved, queue.moveRange(from, to, position));
+                        break;
+                    case 2:
+                        long identifier = random.nextInt(6);
+                        queue.removeIf(item -> item.getIdentifier() == identifier);
+                        reference.removeIf(item -> item.getIdentifier() == identifier);
+                        break;
+                    default:
+                        queue.removeDuplicates();
+                        Set<Long> seen = new HashSet<>();
+                        reference.removeIf(item -> !seen.add(item.getIdentifier()));
+                }
+                assertEquals(reference, queue.getList());
+                long total = 0;
+                for(Q item: reference)
+                    total += item.getDuration();
+                assertEquals(total, queue.getTotalDuration());
+                for(long identifier=0; identifier<6; identifier++)
+                {
+                    final long id = identifier;
+                    assertEquals(reference.stream().filter(item -> item.getIdentifier() == id).count(), queue.count(identifier));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void sharedSizeFollowsEveryQueue()
+    {
+        AtomicLong total = new AtomicLong();
+        FairQueue<Q> first = new FairQueue<>(null, QueueStore.CHUNKED);
+        FairQueue<Q> second = new FairQueue<>(null, QueueStore.LINKED);
+        first.setSharedSize(total);
+        second.setSharedSize(total);
+        Random random = new Random(5);
+        for(int i=0; i<200; i++)
+            (random.nextBoolean() ? first : second).add(new Q(random.nextInt(10)));
+        first.removeAll(3);
+        second.removeRange(0, 10);
+        first.pull();
+        assertEquals(first.getEstimatedSize() + second.getEstimatedSize(), total.get());
+        
+        // a queue that replaces another takes over its share, without counting its items twice
+        FairQueue<Q> replaced = new FairQueue<>(first, QueueStore.LINKED);
+        first.setSharedSize(null);
+        replaced.setSharedSize(total);
+        assertEquals(replaced.getEstimatedSize() + second.getEstimatedSize(), total.get());
+        replaced.clear();
+        second.clear();
+        assertEquals(0, total.get());
+    }
+    
+    @Test
+    public void largePlaylistTakesLinearWork()
+    {
+        FairQueue<Q> queue = new FairQueue<>(null, QueueStore.CHUNKED);
+        for(int i=0; i<50; i++)
+            queue.add(new Q(i % 5));
+        List<Q> playlist = new ArrayList<>();
+        for(int i=0; i<5000; i++)
+            playlist.add(new Q(9));
+        identifierReads = 0;
+        queue.addAll(playlist);
+        assertEquals(5050, queue.size());
+        // looking for the user's last track before every add would read about 12.5 million identifiers
+        assertTrue("adding 5000 tracks read " + identifierReads + " identifiers", identifierReads < 5 * 5050);
+    }
+    
+    @Test
+    public void shuffleOnlyMovesTheUsersTracks()
+    {
+        for(QueueStore store: QueueStore.values())
+        {
+            FairQueue<Q> queue = new FairQueue<>(null, store);
+            for(int i=0; i<3000; i++)
+                queue.add(new Q(i % 3));
+            List<Q> before = queue.getList();
+            identifierReads = 0;
+            assertEquals(1000, queue.shuffle(1));
+            // the list is gone through once, instead of looking up every position
+            assertTrue("shuffling read " + identifierReads + " identifiers", identifierReads <= 3000);
+            List<Q> after = queue.getList();
+            assertEquals(new HashSet<>(before), new HashSet<>(after));
+            assertNotEquals(before, after);
+            for(int i=0; i<after.size(); i++)
+            {
+                assertEquals(before.get(i).getIdentifier(), after.get(i).getIdentifier());
+                if(before.get(i).getIdentifier() != 1)
+                    assertSame(before.get(i), after.get(i));
+            }
+        }
+    }
+    
+    @Test
+    public void playingDoesNotSplitTheQueueAgain()
+    {
+        Random random = new Random(3);
+        FairQueue<Q> queue = new FairQueue<>(null, QueueStore.CHUNKED);
+        List<Q> reference = new ArrayList<>();
+        for(int i=0; i<5000; i++)
+        {
+            Q item = new Q(random.nextInt(50));
+            reference.add(queue.add(item), item);
+        }
+        long reads = 0;
+        for(int i=0; i<1000; i++)
+        {
+            Q item = new Q(random.nextInt(50));
+            int expected = fullScanAdd(reference, item);
+            // only what the queue reads is counted, not the reference
+            identifierReads = 0;
+            int index = queue.add(item);
+            Q pulled = null;
+            if(random.nextInt(4) == 0)
+                queue.skip(2);
+            else
+                pulled = queue.pull();
+            reads += identifierReads;
+            assertEquals(expected, index);
+            if(pulled == null)
+                reference.subList(0, 2).clear();
+            else
+                assertSame(reference.remove(0), pulled);
+        }
+        // splitting the queue into rounds again after every track played would read about 5 million identifiers
+        assertTrue("adding 1000 tracks read " + reads + " identifiers", reads < 1000 * 4 * 50);
+        assertEquals(reference, queue.getList());
+    }
+    
+    private static int fullScanAdd(List<Q> list, Q item)
+    {
+        int lastIndex;
+        for(lastIndex=list.size()-1; lastIndex>-1; lastIndex--)
+            if(list.get(lastIndex).getIdentifier() == item.getIdentifier())
+                break;
+        lastIndex++;
+        Set<Long> set = new HashSet<>();
+        for(; lastIndex<list.size(); lastIndex++)
+        {
+            if(set.contains(list.get(lastIndex).getIdentifier()))
+                break;
+            set.add(list.get(lastIndex).getIdentifier());
+        }
+        list.add(lastIndex, item);
+        return lastIndex;
+    }
+    
+    // how many times the queue has read an identifier, for telling how much work it did
+    private long identifierReads = 0;
+    
     private class Q implements Queueable
     {
         private final long identifier;
@@ -58,7 +470,26 @@ public class FairQueueTest
         @Override
         public long getIdentifier()
         {
+            identifierReads++;
             return identifier;
         }
+        
+        @Override
+        public long getDuration()
+        {
+            return 1000 + identifier;
+        }
+        
+        @Override
+        public long getEstimatedSize()
+        {
+            return 100 + identifier;
+        }
+        
+        @Override
+        public String getKey()
+        {
+            return Long.toString(identifier);
+        }
     }
 }
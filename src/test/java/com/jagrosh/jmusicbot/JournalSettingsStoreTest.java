@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.settings.JournalSettingsStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class JournalSettingsStoreTest
+{
+    @Test
+    public void importsJsonAndKeepsLatestChanges() throws IOException
+    {
+        Path dir = Files.createTempDirectory("settings");
+        Path json = dir.resolve("serversettings.json");
+        Files.write(json, "{\"1\":{\"volume\":50},\"2\":{\"prefix\":\"!\"}}".getBytes());
+
+        JournalSettingsStore store = new JournalSettingsStore(dir.resolve("serversettings.journal"), json);
+        Map<Long, JSONObject> loaded = store.load();
+        assertEquals(50, loaded.get(1L).getInt("volume"));
+        assertEquals("!", loaded.get(2L).getString("prefix"));
+        store.write(Collections.singletonMap(1L, new JSONObject().put("volume", 70)), null);
+        store.close();
+
+        // the journal has taken over, so changes to the json file are not imported again
+        Files.write(json, "{}".getBytes());
+        store = new JournalSettingsStore(dir.resolve("serversettings.journal"), json);
+        loaded = store.load();
+        store.close();
+        assertEquals(2, loaded.size());
+        assertEquals(70, loaded.get(1L).getInt("volume"));
+        assertEquals("!", loaded.get(2L).getString("prefix"));
+    }
+
+    @Test
+    public void failedImportIsTriedAgain() throws IOException
+    {
+        Path dir = Files.createTempDirectory("settings");
+        Path json = dir.resolve("serversettings.json");
+        Path journal = dir.resolve("serversettings.journal");
+        Files.write(json, "{\"1\":{\"volume\":".getBytes());
+        try
+        {
+            new JournalSettingsStore(journal, json).load();
+            fail();
+        }
+        catch(IOException expected) {}
+
+        // the journal the failed import left behind has no records, so the json file is imported once it is fixed
+        Files.write(json, "{\"1\":{\"volume\":50}}".getBytes());
+        JournalSettingsStore store = new JournalSettingsStore(journal, json);
+        assertEquals(50, store.load().get(1L).getInt("volume"));
+        store.close();
+        assertFalse(Files.exists(dir.resolve("serversettings.journal.import")));
+        store = new JournalSettingsStore(journal, json);
+        assertEquals(50, store.load().get(1L).getInt("volume"));
+        store.close();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.settings.JsonSettingsStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class JsonSettingsStoreTest
+{
+    @Test
+    public void writeReplacesTheWholeFile() throws IOException
+    {
+        Path dir = Files.createTempDirectory("settings");
+        Path json = dir.resolve("serversettings.json");
+        Path temp = dir.resolve("serversettings.json.tmp");
+        JsonSettingsStore store = new JsonSettingsStore(json);
+        assertTrue(store.load().isEmpty());
+        // a missing file is created empty, as it always has been
+        assertEquals(0, new JSONObject(new String(Files.readAllBytes(json))).length());
+
+        Map<Long, JSONObject> all = new HashMap<>();
+        all.put(1L, new JSONObject().put("volume", 50));
+        all.put(2L, new JSONObject().put("prefix", "!"));
+        store.write(Collections.singletonMap(1L, all.get(1L)), () -> all);
+        assertFalse(Files.exists(temp));
+
+        // a temporary file left behind by a crash is written over
+        Files.write(temp, "{\"3\":".getBytes());
+        all.remove(2L);
+        store.write(Collections.singletonMap(2L, new JSONObject()), () -> all);
+        assertFalse(Files.exists(temp));
+
+        Map<Long, JSONObject> loaded = new JsonSettingsStore(json).load();
+        assertEquals(Collections.singleton(1L), loaded.keySet());
+        assertEquals(50, loaded.get(1L).getInt("volume"));
+    }
+
+    @Test
+    public void brokenFileIsNotReadAsEmpty() throws IOException
+    {
+        Path json = Files.createTempDirectory("settings").resolve("serversettings.json");
+        Files.write(json, "{\"1\":{\"volume\":".getBytes());
+        try
+        {
+            new JsonSettingsStore(json).load();
+            fail();
+        }
+        catch(IOException expected) {}
+    }
+}
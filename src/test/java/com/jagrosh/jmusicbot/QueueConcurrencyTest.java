@@ -0,0 +1,339 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.queue.AbstractQueue;
+import com.jagrosh.jmusicbot.queue.FairQueue;
+import com.jagrosh.jmusicbot.queue.LinearQueue;
+import com.jagrosh.jmusicbot.queue.QueueStore;
+import com.jagrosh.jmusicbot.queue.Queueable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Stress tests in the style of jcstress: several threads change the same queue
+ * at once, and the results are checked against what must hold for any
+ * interleaving.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class QueueConcurrencyTest
+{
+    private static final int THREADS = 4;
+    private static final int OPERATIONS = 20_000;
+
+    @Test
+    public void concurrentAddsKeepEveryItem() throws Exception
+    {
+        for(AbstractQueue<Q> queue: queues())
+        {
+            run(THREADS, thread -> 
+            {
+                for(int i=0; i<OPERATIONS; i++)
+                    queue.add(new Q(thread));
+            });
+            assertEquals(THREADS * OPERATIONS, queue.size());
+            for(int thread=0; thread<THREADS; thread++)
+                assertEquals(OPERATIONS, queue.count(thread));
+            assertNoDuplicates(queue.getList());
+        }
+    }
+
+    @Test
+    public void everyItemIsPulledOnce() throws Exception
+    {
+        for(AbstractQueue<Q> queue: queues())
+        {
+            ConcurrentLinkedQueue<Q> pulled = new ConcurrentLinkedQueue<>();
+            AtomicBoolean adding = new AtomicBoolean(true);
+            CountDownLatch adders = new CountDownLatch(THREADS / 2);
+            run(THREADS, thread -> 
+            {
+                if(thread % 2 == 0)
+                {
+                    for(int i=0; i<OPERATIONS; i++)
+                        queue.add(new Q(thread));
+                    adders.countDown();
+                }
+                else
+                {
+                    while(adding.get() || !queue.isEmpty())
+                    {
+                        Q item = pullIfAny(queue);
+                        if(item != null)
+                            pulled.add(item);
+                        if(adders.getCount() == 0)
+                            adding.set(false);
+                    }
+                }
+            });
+            List<Q> all = new ArrayList<>(pulled);
+            all.addAll(queue.getList());
+            assertEquals(THREADS / 2 * OPERATIONS, all.size());
+            assertNoDuplicates(all);
+        }
+    }
+
+    @Test
+    public void snapshotsAreConsistent() throws Exception
+    {
+        for(AbstractQueue<Q> queue: queues())
+        {
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicReference<String> failure = new AtomicReference<>();
+            run(THREADS, thread -> 
+            {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                if(thread == 0)
+                {
+                    // the reader: a snapshot must never change, and must never hold gaps or duplicates
+                    while(running.get())
+                    {
+                        List<Q> snapshot = queue.getList();
+                        List<Q> copy = new ArrayList<>(snapshot);
+                        try
+                        {
+                            snapshot.add(new Q(0));
+                            failure.set("snapshot is modifiable");
+                        }
+                        catch(UnsupportedOperationException expected) {}
+                        if(copy.contains(null))
+                            failure.set("snapshot holds null");
+                        Map<Q, Boolean> seen = new IdentityHashMap<>();
+                        for(Q item: copy)
+                            if(seen.put(item, true) != null)
+                                failure.set("snapshot holds a duplicate");
+                        if(!copy.equals(snapshot))
+                            failure.set("snapshot changed");
+                    }
+                    return;
+                }
+                for(int i=0; i<OPERATIONS; i++)
+                {
+                    int choice = random.nextInt(10);
+                    if(choice < 5)
+                        queue.add(new Q(random.nextInt(5)));
+                    else if(choice < 7)
+                        pullIfAny(queue);
+                    else if(choice == 7)
+                        queue.removeAll(random.nextInt(5));
+                    else if(choice == 8)
+                        queue.shuffle(random.nextInt(5));
+                    else
+                        moveIfAny(queue, random);
+                }
+                running.set(false);
+            });
+            assertNull(failure.get(), failure.get());
+            
+            // the owner index must match the contents once every thread is done
+            List<Q> list = queue.getList();
+            int counted = 0;
+            for(int owner=0; owner<5; owner++)
+                counted += queue.count(owner);
+            assertEquals(list.size(), counted);
+            assertNoDuplicates(list);
+        }
+    }
+
+    @Test
+    public void snapshotsOutliveLaterChanges()
+    {
+        // a snapshot shares the chunks of the queue, which every kind of change must copy first
+        Random random = new Random(9);
+        FairQueue<Q> queue = new FairQueue<>(null, QueueStore.CHUNKED);
+        List<List<Q>> snapshots = new ArrayList<>();
+        List<List<Q>> copies = new ArrayList<>();
+        for(int op=0; op<5000; op++)
+        {
+            int size = queue.size();
+            int choice = random.nextInt(8);
+            if(choice < 3 || size == 0)
+                queue.add(new Q(random.nextInt(6)));
+            else if(choice == 3)
+                queue.addAt(random.nextInt(size + 1), new Q(random.nextInt(6)));
+            else if(choice == 4)
+                queue.remove(random.nextInt(size));
+            else if(choice == 5)
+            {
+                int from = random.nextInt(size);
+                queue.removeRange(from, from + random.nextInt(size - from + 1));
+            }
+            else if(choice == 6)
+                queue.shuffle(random.nextInt(6));
+            else
+                queue.skip(random.nextInt(Math.min(size, 3) + 1));
+            if(op % 50 == 0)
+            {
+                List<Q> snapshot = queue.getList();
+                // the same copy is handed out until the queue changes
+                assertSame(snapshot, queue.getList());
+                snapshots.add(snapshot);
+                copies.add(new ArrayList<>(snapshot));
+            }
+        }
+        assertEquals(copies, snapshots);
+    }
+
+    @Test
+    public void versionOnlyChangesWithTheQueue()
+    {
+        FairQueue<Q> queue = new FairQueue<>(null, QueueStore.CHUNKED);
+        queue.add(new Q(1));
+        List<Q> first = queue.getList();
+        long version = queue.getVersion();
+        assertEquals(version, queue.getVersion());
+        queue.add(new Q(2));
+        assertNotEquals(version, queue.getVersion());
+        assertEquals(1, first.size());
+        // a queue that replaces another never starts out with its version
+        assertNotEquals(queue.getVersion(), new FairQueue<>(queue, QueueStore.CHUNKED).getVersion());
+    }
+
+    @Test
+    public void replacedQueueDoesNotShareItsList()
+    {
+        for(QueueStore store: QueueStore.values())
+        {
+            FairQueue<Q> previous = new FairQueue<>(null, store);
+            previous.add(new Q(1));
+            previous.add(new Q(2));
+            FairQueue<Q> queue = new FairQueue<>(previous, store);
+            // a thread that still has the previous queue must not change the new one
+            previous.pull();
+            assertEquals(2, queue.size());
+            assertEquals(2, queue.count(1) + queue.count(2));
+        }
+    }
+
+    @Test
+    public void checkedOperationsLeaveMissingPositionsAlone()
+    {
+        FairQueue<Q> queue = new FairQueue<>(null, QueueStore.CHUNKED);
+        assertNull(queue.pollFirst());
+        Q a = new Q(1);
+        Q b = new Q(2);
+        queue.add(a);
+        queue.add(b);
+        assertNull(queue.getIfPresent(2));
+        assertNull(queue.removeIfPresent(-1));
+        assertNull(queue.skipTo(2));
+        assertFalse(queue.remove(0, b));
+        assertEquals(2, queue.size());
+        assertTrue(queue.remove(1, b));
+        // a position that was removed meanwhile counts as the end of the queue
+        assertEquals(a.getDuration(), queue.getDurationBefore(5));
+        assertEquals(0, queue.getDurationBefore(-1));
+        assertSame(a, queue.pollFirst());
+        assertNull(queue.pollFirst());
+    }
+
+    private static List<AbstractQueue<Q>> queues()
+    {
+        List<AbstractQueue<Q>> queues = new ArrayList<>();
+        for(QueueStore store: QueueStore.values())
+        {
+            queues.add(new FairQueue<>(null, store));
+            queues.add(new LinearQueue<>(null, store));
+        }
+        return queues;
+    }
+
+    private static Q pullIfAny(AbstractQueue<Q> queue)
+    {
+        synchronized(queue)
+        {
+            return queue.isEmpty() ? null : queue.pull();
+        }
+    }
+
+    private static void moveIfAny(AbstractQueue<Q> queue, ThreadLocalRandom random)
+    {
+        synchronized(queue)
+        {
+            if(queue.size() > 1)
+                queue.moveItem(random.nextInt(queue.size()), random.nextInt(queue.size()));
+        }
+    }
+
+    private static void assertNoDuplicates(List<Q> items)
+    {
+        Map<Q, Boolean> seen = new IdentityHashMap<>();
+        for(Q item: items)
+            assertNull("item appears twice", seen.put(item, true));
+    }
+
+    private static void run(int threads, ThreadBody body) throws Exception
+    {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> started = new ArrayList<>();
+        for(int i=0; i<threads; i++)
+        {
+            int thread = i;
+            Thread t = new Thread(() -> 
+            {
+                try
+                {
+                    start.await();
+                    body.run(thread);
+                }
+                catch(Throwable e)
+                {
+                    error.compareAndSet(null, e);
+                }
+            });
+            t.start();
+            started.add(t);
+        }
+        start.countDown();
+        for(Thread t: started)
+            t.join();
+        if(error.get() != null)
+            throw new AssertionError(error.get());
+    }
+
+    private interface ThreadBody
+    {
+        void run(int thread) throws Exception;
+    }
+
+    private static class Q implements Queueable
+    {
+        private final long identifier;
+
+        private Q(long identifier)
+        {
+            this.identifier = identifier;
+        }
+
+        @Override
+        public long getIdentifier()
+        {
+            return identifier;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.audio.QueueLimits;
+import com.jagrosh.jmusicbot.audio.QueuedTrack;
+import com.jagrosh.jmusicbot.audio.RequestMetadata;
+import com.jagrosh.jmusicbot.queue.AbstractQueue;
+import com.jagrosh.jmusicbot.queue.LinearQueue;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.typesafe.config.ConfigFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class QueueLimitsTest
+{
+    private final AtomicLong shared = new AtomicLong();
+    private final AbstractQueue<QueuedTrack> queue = new LinearQueue<>(null);
+
+    public QueueLimitsTest()
+    {
+        queue.setSharedSize(shared);
+    }
+
+    @Test
+    public void userTrackLimitOnlyCountsTheirTracks()
+    {
+        QueueLimits limits = limits("user.tracks = 2");
+        queue.add(track(1, 1000));
+        queue.add(track(1, 1000));
+        queue.add(track(2, 1000));
+        assertNotNull(fit(limits, track(1, 1000)));
+        assertNull(fit(limits, track(2, 1000)));
+        assertNull(fit(limits, track(3, 1000)));
+
+        // the usage counts each track it lets through
+        QueueLimits.Usage usage = limits.usage(queue, 2, shared::get);
+        assertNull(usage.fit(track(2, 1000)));
+        assertNotNull(usage.fit(track(2, 1000)));
+    }
+
+    @Test
+    public void userTimeFollowsRemovals()
+    {
+        QueueLimits limits = limits("user.time = 10");
+        queue.add(track(1, 6000));
+        queue.add(track(2, 6000));
+        assertNull(fit(limits, track(1, 4000)));
+        assertNotNull(fit(limits, track(1, 5000)));
+        queue.remove(0);
+        assertNull(fit(limits, track(1, 10000)));
+        // the other user's time is left as it was
+        assertNotNull(fit(limits, track(2, 5000)));
+        queue.clear();
+        assertNull(fit(limits, track(2, 10000)));
+    }
+
+    @Test
+    public void guildLimitsCountEveryUser()
+    {
+        QueueLimits limits = limits("guild.tracks = 3, guild.time = 20");
+        queue.add(track(1, 5000));
+        queue.add(track(2, 5000));
+        assertNull(fit(limits, track(3, 10000)));
+        assertNotNull(fit(limits, track(3, 10001)));
+        queue.add(track(3, 1000));
+        assertEquals("The queue already holds the most tracks allowed (`3`)", fit(limits, track(4, 1000)));
+    }
+
+    @Test
+    public void memoryFollowsTheEstimatedSize()
+    {
+        // a title of 248 characters makes each entry an estimated kilobyte
+        QueuedTrack first = track(1, 1000, 248);
+        long size = first.getEstimatedSize();
+        assertEquals(1024, size);
+        QueueLimits limits = limits("user.memory = 2");
+        queue.add(first);
+        queue.add(track(1, 1000, 248));
+        assertEquals(size * 2, queue.getEstimatedSize(1));
+        assertNotNull(fit(limits, track(1, 1000, 248)));
+        queue.pull();
+        assertEquals(size, queue.getEstimatedSize(1));
+        assertNull(fit(limits, track(1, 1000, 248)));
+    }
+
+    @Test
+    public void totalMemoryIsSharedByEveryQueue()
+    {
+        AbstractQueue<QueuedTrack> other = new LinearQueue<>(null);
+        other.setSharedSize(shared);
+        QueueLimits limits = limits("totalmemory = 1");
+        // each character is counted as two bytes, so each of these is a little over half a megabyte
+        other.add(track(1, 1000, 1024 * 1024 / 4));
+        other.add(track(2, 1000, 1024 * 1024 / 4));
+        assertEquals(other.getEstimatedSize(), shared.get());
+        assertEquals("The bot is queuing too many tracks right now, try again later", fit(limits, track(3, 1000)));
+        other.remove(0);
+        assertNull(fit(limits, track(3, 1000)));
+
+        // a queue that is replaced stops counting towards the total
+        other.setSharedSize(null);
+        assertEquals(0, shared.get());
+    }
+
+    private String fit(QueueLimits limits, QueuedTrack qtrack)
+    {
+        return limits.usage(queue, qtrack.getIdentifier(), shared::get).fit(qtrack);
+    }
+
+    private static QueueLimits limits(String overrides)
+    {
+        return QueueLimits.fromConfig(ConfigFactory.parseString(overrides).withFallback(ConfigFactory.parseString(
+                "guild.tracks = 0, guild.time = 0, guild.memory = 0, user.tracks = 0, user.time = 0, user.memory = 0, totalmemory = 0")));
+    }
+
+    private static QueuedTrack track(long owner, long duration)
+    {
+        return track(owner, duration, 1);
+    }
+
+    /**
+     * @param padding how many characters the title has, which the estimated size follows
+     */
+    private static QueuedTrack track(long owner, long duration, int padding)
+    {
+        AudioTrackInfo info = new AudioTrackInfo(new String(new char[padding]).replace('\0', 't'), "author", duration, "id", false, null);
+        AudioTrack track = (AudioTrack) Proxy.newProxyInstance(AudioTrack.class.getClassLoader(), new Class<?>[]{AudioTrack.class}, (proxy, method, args) ->
+        {
+            switch(method.getName())
+            {
+                case "getInfo": return info;
+                case "getDuration": return duration;
+                case "isSeekable": return false;
+                case "setUserData": return null;
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                default: throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        return new QueuedTrack(track, metadata(owner));
+    }
+
+    private static RequestMetadata metadata(long owner)
+    {
+        // the metadata of a user is only built from a JDA user, or read back like this
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeBoolean(true);
+            out.writeLong(owner);
+            out.writeBoolean(false);
+            out.writeBoolean(false);
+            out.writeBoolean(false);
+            out.writeBoolean(false);
+            return RequestMetadata.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        }
+        catch(IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
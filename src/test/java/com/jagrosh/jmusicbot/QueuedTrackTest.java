@@ -0,0 +1,177 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.audio.QueuedTrack;
+import com.jagrosh.jmusicbot.audio.RequestMetadata;
+import com.jagrosh.jmusicbot.queue.AbstractQueue;
+import com.jagrosh.jmusicbot.queue.LinearQueue;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.bandcamp.BandcampAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.bandcamp.BandcampAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class QueuedTrackTest
+{
+    private final DefaultAudioPlayerManager manager = new DefaultAudioPlayerManager();
+    private final BandcampAudioSourceManager bandcamp = new BandcampAudioSourceManager();
+
+    public QueuedTrackTest()
+    {
+        manager.registerSourceManager(bandcamp);
+    }
+
+    @Test
+    public void compactedTrackDecodesToSameTrack()
+    {
+        QueuedTrack qt = new QueuedTrack(track(1), RequestMetadata.EMPTY);
+        String rendered = qt.toString();
+        assertTrue(qt.compact(manager));
+        assertTrue(qt.isCompact());
+        assertEquals(rendered, qt.toString());
+        assertTrue("rendering must not decode the entry for good", qt.isCompact());
+        assertEquals(track(1).getDuration(), qt.getDuration());
+
+        AudioTrack decoded = qt.getTrack();
+        assertFalse(qt.isCompact());
+        assertEquals(uri(1), decoded.getIdentifier());
+        assertEquals("Title 1", decoded.getInfo().title);
+        assertSame(RequestMetadata.EMPTY, decoded.getUserData());
+        assertSame(decoded, qt.getTrack());
+    }
+
+    @Test
+    public void compactedEntryOnlyKeepsTheEncodedBytes() throws Exception
+    {
+        AudioTrack track = track(1);
+        AudioTrackInfo info = track.getInfo();
+        QueuedTrack qt = new QueuedTrack(track, RequestMetadata.EMPTY);
+        assertTrue(qt.compact(manager));
+        String rendered = qt.toString();
+
+        // apart from the encoded bytes, only the line shown in the queue and small values are left
+        byte[] encoded = null;
+        for(Field field: QueuedTrack.class.getDeclaredFields())
+        {
+            if(Modifier.isStatic(field.getModifiers()))
+                continue;
+            field.setAccessible(true);
+            Object value = field.get(qt);
+            assertFalse(field.getName() + " still holds the track", value instanceof AudioTrack);
+            if(value instanceof byte[])
+                encoded = (byte[]) value;
+            else if(value instanceof String)
+                assertTrue(field.getName() + " holds " + value, value.equals(rendered) || value.equals(qt.getKey()));
+        }
+        assertNotNull(encoded);
+        assertSame(encoded, qt.encode(manager));
+
+        // lavaplayer encodes the strings of the track as utf-8, with a few bytes of framing around them
+        int strings = utf8(info.title) + utf8(info.author) + utf8(info.identifier) + utf8(info.uri) + utf8(bandcamp.getSourceName());
+        assertTrue(encoded.length + " encoded bytes for " + strings + " bytes of strings", encoded.length <= strings + 64);
+    }
+
+    @Test
+    public void lazyEntryIsNotWaitedFor()
+    {
+        AudioLoadResultHandler[] handler = new AudioLoadResultHandler[1];
+        AudioPlayerManager loader = (AudioPlayerManager) Proxy.newProxyInstance(AudioPlayerManager.class.getClassLoader(), 
+                new Class<?>[]{AudioPlayerManager.class}, (proxy, method, args) -> 
+        {
+            assertEquals("loadItem", method.getName());
+            handler[0] = (AudioLoadResultHandler) args[1];
+            // the load never finishes on its own, so waiting for it would hang the test
+            return new CompletableFuture<Void>();
+        });
+        QueuedTrack qt = new QueuedTrack(loader, uri(2), RequestMetadata.EMPTY);
+        assertNull(qt.getTrack());
+        assertNotNull(handler[0]);
+
+        AtomicInteger calls = new AtomicInteger();
+        assertTrue(qt.whenLoaded(calls::incrementAndGet));
+        assertEquals(0, calls.get());
+        // a load that finishes late is not lost
+        AudioTrack loaded = track(2);
+        handler[0].trackLoaded(loaded);
+        assertEquals(1, calls.get());
+        assertTrue(qt.isLoaded());
+        assertSame(loaded, qt.getTrack());
+        assertFalse(qt.whenLoaded(calls::incrementAndGet));
+
+        QueuedTrack missing = new QueuedTrack(loader, uri(3), RequestMetadata.EMPTY);
+        assertTrue(missing.whenLoaded(calls::incrementAndGet));
+        handler[0].noMatches();
+        assertEquals(2, calls.get());
+        assertTrue(missing.isFailed());
+        assertNull(missing.getTrack());
+        assertFalse(missing.whenLoaded(calls::incrementAndGet));
+    }
+
+    @Test
+    public void everyKindOfEntryHasTheSameKey() throws Exception
+    {
+        QueuedTrack loaded = new QueuedTrack(track(1), RequestMetadata.EMPTY);
+        QueuedTrack compacted = new QueuedTrack(track(1), RequestMetadata.EMPTY);
+        assertTrue(compacted.compact(manager));
+        QueuedTrack restored = new QueuedTrack(manager, loaded.encode(manager), RequestMetadata.EMPTY, loaded.getDuration());
+        QueuedTrack lazy = new QueuedTrack(manager, uri(1), RequestMetadata.EMPTY);
+        assertEquals(uri(1), loaded.getKey());
+        assertEquals(uri(1), compacted.getKey());
+        assertEquals(uri(1), restored.getKey());
+        assertTrue("finding the key must not leave the entry decoded", restored.isCompact());
+        assertEquals(uri(1), lazy.getKey());
+        // a search has no uri until it is loaded, so it is never taken for a duplicate
+        assertNull(new QueuedTrack(manager, "ytsearch:Title 1", RequestMetadata.EMPTY).getKey());
+
+        AbstractQueue<QueuedTrack> queue = new LinearQueue<>(null);
+        queue.setDeduplicating(true);
+        queue.add(restored);
+        assertTrue(queue.isDuplicate(loaded));
+        assertTrue(queue.isDuplicate(lazy));
+        assertFalse(queue.isDuplicate(new QueuedTrack(track(2), RequestMetadata.EMPTY)));
+    }
+
+    private AudioTrack track(int i)
+    {
+        // distinct strings for every entry, like a real playlist
+        return new BandcampAudioTrack(new AudioTrackInfo("Title " + i, "Author " + i, 212_000 + i, uri(i), false, uri(i)), bandcamp);
+    }
+
+    private static String uri(int i)
+    {
+        return "https://artist.bandcamp.com/track/title-" + i;
+    }
+
+    private static int utf8(String str)
+    {
+        return str.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
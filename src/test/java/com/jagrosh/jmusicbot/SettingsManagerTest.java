@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.settings.Settings;
+import com.jagrosh.jmusicbot.settings.SettingsManager;
+import com.jagrosh.jmusicbot.settings.SettingsStore;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class SettingsManagerTest
+{
+    private final List<Map<Long, JSONObject>> writes = new ArrayList<>();
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private boolean closed = false;
+    private boolean failing = false;
+
+    private final SettingsStore store = new SettingsStore()
+    {
+        @Override
+        public Map<Long, JSONObject> load()
+        {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void write(Map<Long, JSONObject> changed, Supplier<Map<Long, JSONObject>> all) throws IOException
+        {
+            if(failing)
+                throw new IOException("disk full");
+            writes.add(changed);
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    };
+
+    // only records what is scheduled, so the test decides when it runs
+    private final ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(1)
+    {
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit)
+        {
+            scheduled.add(command);
+            return null;
+        }
+    };
+
+    @Test
+    public void burstOfChangesIsOneWrite()
+    {
+        SettingsManager manager = new SettingsManager(store);
+        manager.init(writer);
+        manager.editSettings(1L).setVolume(50);
+        manager.editSettings(1L).setPrefix("!");
+        manager.editSettings(2L).setVolume(70);
+        assertEquals(1, scheduled.size());
+        assertTrue(writes.isEmpty());
+
+        scheduled.get(0).run();
+        assertEquals(1, writes.size());
+        assertEquals(2, writes.get(0).size());
+        assertEquals("!", writes.get(0).get(1L).getString("prefix"));
+        assertEquals(70, writes.get(0).get(2L).getInt("volume"));
+
+        // a change after the write schedules the next one, with only that guild
+        manager.editSettings(2L).setVolume(80);
+        assertEquals(2, scheduled.size());
+        scheduled.get(1).run();
+        assertEquals(Collections.singleton(2L), writes.get(1).keySet());
+    }
+
+    @Test
+    public void failedWriteIsRetriedWithTheNextChange()
+    {
+        SettingsManager manager = new SettingsManager(store);
+        manager.init(writer);
+        manager.editSettings(1L).setVolume(50);
+        failing = true;
+        scheduled.get(0).run();
+        assertTrue(writes.isEmpty());
+
+        failing = false;
+        manager.editSettings(2L).setVolume(70);
+        scheduled.get(1).run();
+        assertEquals(2, writes.get(0).size());
+        assertEquals(50, writes.get(0).get(1L).getInt("volume"));
+    }
+
+    @Test
+    public void shutdownWritesPendingChanges()
+    {
+        SettingsManager manager = new SettingsManager(store);
+        manager.init(writer);
+        manager.editSettings(1L).setVolume(50);
+        assertTrue(writes.isEmpty());
+
+        manager.shutdown();
+        assertEquals(1, writes.size());
+        assertEquals(50, writes.get(0).get(1L).getInt("volume"));
+        assertTrue(closed);
+
+        // the write that was scheduled has nothing left to do
+        scheduled.get(0).run();
+        assertEquals(1, writes.size());
+    }
+
+    @Test
+    public void changesAreWrittenRightAwayOnceTheWriterRejectsThem()
+    {
+        SettingsManager manager = new SettingsManager(store);
+        ScheduledThreadPoolExecutor stopped = new ScheduledThreadPoolExecutor(1);
+        stopped.shutdown();
+        manager.init(stopped);
+        manager.editSettings(1L).setVolume(50);
+        assertEquals(1, writes.size());
+        // a rejected write must not leave the next change waiting for a write that never comes
+        manager.editSettings(1L).setVolume(60);
+        assertEquals(2, writes.size());
+        assertEquals(60, writes.get(1).get(1L).getInt("volume"));
+    }
+
+    @Test
+    public void guildsWithoutSettingsShareTheDefaults()
+    {
+        SettingsManager manager = new SettingsManager(store);
+        Settings defaults = manager.getSettings(1L);
+        assertSame(defaults, manager.getSettings(2L));
+        assertEquals(100, defaults.getVolume());
+        try
+        {
+            defaults.setVolume(50);
+            fail();
+        }
+        catch(UnsupportedOperationException expected) {}
+        assertEquals(0, manager.getStoredCount());
+
+        // a guild only gets settings of its own once they are changed, and keeps those
+        Settings own = manager.editSettings(1L);
+        assertSame(own, manager.editSettings(1L));
+        own.setVolume(50);
+        assertSame(own, manager.getSettings(1L));
+        assertEquals(50, manager.getSettings(1L).getVolume());
+        assertSame(defaults, manager.getSettings(2L));
+        assertEquals(100, manager.getSettings(2L).getVolume());
+        assertEquals(1, manager.getStoredCount());
+    }
+
+    @Test
+    public void changesAreWrittenRightAwayBeforeInit()
+    {
+        SettingsManager manager = new SettingsManager(store);
+        manager.editSettings(1L).setVolume(50);
+        manager.editSettings(1L).setVolume(60);
+        assertTrue(scheduled.isEmpty());
+        assertEquals(2, writes.size());
+        assertEquals(60, writes.get(1).get(1L).getInt("volume"));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.audio.TrackResumer;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class TrackResumerTest
+{
+    private final static FriendlyException FAULT = new FriendlyException("connection reset", FriendlyException.Severity.FAULT, null);
+
+    private final List<Long> delays = new ArrayList<>();
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<String> loads = new ArrayList<>();
+    private final List<AudioLoadResultHandler> handlers = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+    private final TrackResumer resumer = new TrackResumer(
+            (identifier, handler) -> { loads.add(identifier); handlers.add(handler); },
+            (task, delay) -> { delays.add(delay); tasks.add(task); },
+            new TrackResumer.Listener()
+            {
+                @Override
+                public void resumed(AudioTrack failed, AudioTrack loaded, long position)
+                {
+                    events.add("resumed " + loaded.getIdentifier() + " at " + position);
+                }
+
+                @Override
+                public void failed(AudioTrack failed)
+                {
+                    events.add("failed " + failed.getIdentifier());
+                }
+            });
+
+    @Test
+    public void backoffDoublesAndGivesUpAfterTheLastAttempt()
+    {
+        AudioTrack track = track("a", 30000, true);
+        for(int attempt=0; attempt<TrackResumer.MAX_ATTEMPTS; attempt++)
+        {
+            assertTrue(resumer.resume(track, FAULT));
+            assertTrue(resumer.isResuming(track));
+            // nothing is loaded until the delay has passed
+            assertEquals(attempt, loads.size());
+            tasks.get(attempt).run();
+            assertEquals("a", loads.get(attempt));
+            handlers.get(attempt).loadFailed(FAULT);
+            assertFalse(resumer.isResuming(track));
+        }
+        assertEquals(Arrays.asList(1000L, 2000L, 4000L), delays);
+        assertEquals(Arrays.asList("failed a", "failed a", "failed a"), events);
+
+        // the last attempt has been used up, so the track is skipped
+        assertFalse(resumer.resume(track, FAULT));
+        assertEquals(TrackResumer.MAX_ATTEMPTS, delays.size());
+        assertEquals(0, resumer.getResumes());
+    }
+
+    @Test
+    public void loadedTrackContinuesAtTheFailedPosition()
+    {
+        AudioTrack track = track("a", 30000, true);
+        assertTrue(resumer.resume(track, FAULT));
+        tasks.get(0).run();
+        handlers.get(0).trackLoaded(track("a", 0, true));
+        assertEquals(Arrays.asList("resumed a at 30000"), events);
+        assertEquals(1, resumer.getResumes());
+        assertFalse(resumer.isResuming(track));
+    }
+
+    @Test
+    public void attemptsStartOverForAnotherTrack()
+    {
+        AudioTrack track = track("a", 30000, true);
+        resumer.resume(track, FAULT);
+        resumer.resume(track, FAULT);
+        resumer.started(track("b", 0, true));
+        resumer.resume(track, FAULT);
+        assertEquals(Arrays.asList(1000L, 2000L, 1000L), delays);
+    }
+
+    @Test
+    public void cancelledAttemptIsIgnored()
+    {
+        AudioTrack track = track("a", 30000, true);
+        resumer.resume(track, FAULT);
+        resumer.cancel();
+        tasks.get(0).run();
+        handlers.get(0).trackLoaded(track("a", 0, true));
+        assertTrue(events.isEmpty());
+        assertEquals(0, resumer.getResumes());
+    }
+
+    @Test
+    public void onlyTemporaryFailuresOfStartedTracksAreRetried()
+    {
+        FriendlyException common = new FriendlyException("video unavailable", FriendlyException.Severity.COMMON, null);
+        assertFalse(resumer.resume(track("a", 30000, true), common));
+        assertFalse(resumer.resume(track("a", 0, true), FAULT));
+        assertFalse(resumer.resume(track("a", 30000, false), FAULT));
+        assertTrue(delays.isEmpty());
+    }
+
+    private static AudioTrack track(String identifier, long position, boolean seekable)
+    {
+        return (AudioTrack) Proxy.newProxyInstance(AudioTrack.class.getClassLoader(), new Class<?>[]{AudioTrack.class}, (proxy, method, args) ->
+        {
+            switch(method.getName())
+            {
+                case "getIdentifier": return identifier;
+                case "getPosition": return position;
+                case "isSeekable": return seekable;
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                default: throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2022 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.queue.FairQueue;
+import com.jagrosh.jmusicbot.queue.QueueStore;
+import com.jagrosh.jmusicbot.queue.Queueable;
+import com.jagrosh.jmusicbot.queue.WeightedQueue;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class WeightedQueueTest
+{
+    @Test
+    public void longTracksGetTheSameAirtime()
+    {
+        WeightedQueue<Q> queue = new WeightedQueue<>(null, QueueStore.CHUNKED);
+        for(int i=0; i<20; i++)
+            queue.add(new Q(1, 600_000));
+        for(int i=0; i<60; i++)
+            queue.add(new Q(2, 180_000));
+        long[] airtime = new long[3];
+        long played = 0;
+        while(played < 3 * 60 * 60 * 1000)
+        {
+            Q item = queue.pull();
+            airtime[(int) item.getIdentifier()] += item.getDuration();
+            played += item.getDuration();
+        }
+        assertTrue("airtime was " + airtime[1] + " and " + airtime[2], Math.abs(airtime[1] - airtime[2]) <= 600_000);
+    }
+
+    @Test
+    public void usersWithoutTracksStartAtTheHead()
+    {
+        WeightedQueue<Q> queue = new WeightedQueue<>(null, QueueStore.CHUNKED);
+        for(int i=0; i<10; i++)
+            queue.add(new Q(1, 180_000));
+        queue.pull();
+        queue.pull();
+        // the user who is playing now waits for a new user, even one who left and came back
+        assertEquals(0, queue.add(new Q(2, 180_000)));
+        assertEquals(2, queue.add(new Q(2, 180_000)));
+        queue.removeAll(2);
+        assertEquals(0, queue.add(new Q(2, 180_000)));
+    }
+
+    @Test
+    public void manualChangesKeepTheOrder()
+    {
+        Random random = new Random(7);
+        WeightedQueue<Q> queue = new WeightedQueue<>(null, QueueStore.CHUNKED);
+        for(int step=0; step<5000; step++)
+        {
+            int op = random.nextInt(14);
+            if(op < 5 || queue.size() < 2)
+                queue.add(new Q(random.nextInt(8), random.nextInt(4) * 120_000));
+            else if(op == 5)
+                queue.moveItem(random.nextInt(queue.size()), random.nextInt(queue.size()));
+            else if(op == 6)
+            {
+                int from = random.nextInt(queue.size());
+                int to = from + random.nextInt(queue.size() - from) + 1;
+                queue.moveRange(from, to, random.nextInt(queue.size() - (to - from) + 1));
+            }
+            else if(op == 7)
+                queue.addAt(random.nextInt(queue.size() + 1), new Q(random.nextInt(8), 60_000));
+            else if(op == 8)
+                queue.shuffle(random.nextInt(8));
+            else if(op == 9)
+                queue.removeAll(random.nextInt(8));
+            else if(op == 10)
+                queue.remove(random.nextInt(queue.size()));
+            else if(op == 11)
+            {
+                int from = random.nextInt(queue.size());
+                queue.removeRange(from, from + random.nextInt(queue.size() - from) + 1);
+            }
+            else if(op == 12)
+                queue.skip(random.nextInt(Math.min(queue.size(), 3) + 1));
+            else
+                queue.pull();
+            assertSorted(queue);
+        }
+        // the tags are still sorted, so adding finds a place for a new user
+        int size = queue.size();
+        int index = queue.add(new Q(9, 60_000));
+        assertEquals(size + 1, queue.size());
+        assertTrue(index <= size);
+        assertEquals(9, queue.get(index).getIdentifier());
+        assertSorted(queue);
+    }
+
+    @Test
+    public void switchingQueuesKeepsTheOrder()
+    {
+        FairQueue<Q> fair = new FairQueue<>(null, QueueStore.CHUNKED);
+        Random random = new Random(3);
+        for(int i=0; i<200; i++)
+            fair.add(new Q(random.nextInt(8), random.nextInt(4) * 120_000));
+        List<Q> before = fair.getList();
+        WeightedQueue<Q> queue = new WeightedQueue<>(fair, QueueStore.CHUNKED);
+        assertEquals(before, queue.getList());
+        assertSorted(queue);
+    }
+
+    private static void assertSorted(WeightedQueue<Q> queue)
+    {
+        for(int i=1; i<queue.size(); i++)
+            assertTrue("tag " + i + " is before the one ahead of it", queue.getTag(i - 1) <= queue.getTag(i));
+    }
+
+    private class Q implements Queueable
+    {
+        private final long identifier;
+        private final long duration;
+
+        private Q(long identifier, long duration)
+        {
+            this.identifier = identifier;
+            this.duration = duration;
+        }
+
+        @Override
+        public long getIdentifier()
+        {
+            return identifier;
+        }
+
+        @Override
+        public long getDuration()
+        {
+            return duration;
+        }
+    }
+}